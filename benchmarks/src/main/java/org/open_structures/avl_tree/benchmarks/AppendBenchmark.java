@@ -0,0 +1,60 @@
+package org.open_structures.avl_tree.benchmarks;
+
+import org.open_structures.avl_tree.AVLNode;
+import org.open_structures.avl_tree.AVLTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends {@code size} ascending keys to an index-free tree, either searching from the root every time or from the node
+ * of the previous key with {@link AVLTree#insertNear}. Keys are strings with a long common prefix, as identifiers and
+ * timestamps often are, so that comparisons cost what they do in such trees.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AppendBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int size;
+
+    private String[] keys;
+
+    private AVLTree<String> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = String.format("event-2024-01-01T00:00:00-%010d", i);
+        }
+        tree = AVLTree.indexFree(Comparator.naturalOrder());
+    }
+
+    @Benchmark
+    public AVLTree<String> insert() {
+        for (String key : keys) {
+            tree.insert(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public AVLTree<String> insertNearPrevious() {
+        AVLNode<String> last = tree.insert(keys[0]);
+        for (int i = 1; i < keys.length; i++) {
+            last = tree.insertNear(last, keys[i]);
+        }
+        return tree;
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        tree.clear();
+    }
+}
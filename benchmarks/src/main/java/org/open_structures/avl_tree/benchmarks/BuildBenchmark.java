@@ -0,0 +1,63 @@
+package org.open_structures.avl_tree.benchmarks;
+
+import org.open_structures.avl_tree.AVLTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a tree of {@code size} elements from scratch and clears it. Building big trees takes long enough for every
+ * invocation to be measured on its own, so the benchmark runs in single shot mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ADVERSARIAL"})
+    private KeyOrder order;
+
+    private Integer[] keys;
+
+    private AVLTree<Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] orderedKeys = order.keys(size, 42);
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = orderedKeys[i];
+        }
+        tree = new AVLTree<>(Integer::compareTo);
+    }
+
+    @Benchmark
+    public AVLTree<Integer> insertAll() {
+        for (Integer key : keys) {
+            tree.insert(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> insertAllThenDeleteAll() {
+        for (Integer key : keys) {
+            tree.insert(key);
+        }
+        for (Integer key : keys) {
+            tree.delete(key);
+        }
+        return tree;
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        tree.clear();
+    }
+}
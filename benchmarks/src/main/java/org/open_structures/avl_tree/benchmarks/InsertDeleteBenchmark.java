@@ -0,0 +1,51 @@
+package org.open_structures.avl_tree.benchmarks;
+
+import org.open_structures.avl_tree.AVLTree;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert and delete on a tree of a steady size. Each invocation inserts a key that is not in the tree and deletes it
+ * right away, so the tree never drifts away from {@code size} elements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertDeleteBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ADVERSARIAL"})
+    private KeyOrder order;
+
+    private AVLTree<Integer> tree;
+    private Integer[] absentKeys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] keys = order.keys(size, 42);
+        tree = new AVLTree<>(Integer::compareTo);
+        for (int key : keys) {
+            tree.insert(key);
+        }
+        absentKeys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            absentKeys[i] = keys[i] + 1;
+        }
+    }
+
+    @Benchmark
+    public void insertAndDelete(Blackhole blackhole) {
+        Integer key = absentKeys[next];
+        next = next + 1 == absentKeys.length ? 0 : next + 1;
+        blackhole.consume(tree.insert(key));
+        tree.delete(key);
+    }
+}
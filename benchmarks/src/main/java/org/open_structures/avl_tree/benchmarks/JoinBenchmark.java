@@ -0,0 +1,56 @@
+package org.open_structures.avl_tree.benchmarks;
+
+import org.open_structures.avl_tree.AVLTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AVLTree#join} and {@link AVLTree#clear()} consume the trees they are given, so a fresh pair of trees is built
+ * before every measured invocation. The left tree holds {@code size} elements and the right one {@code size / ratio}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class JoinBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"1", "1000"})
+    private int ratio;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ADVERSARIAL"})
+    private KeyOrder order;
+
+    private AVLTree<Integer> left;
+    private AVLTree<Integer> right;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        int rightSize = Math.max(1, size / ratio);
+        left = new AVLTree<>(Integer::compareTo);
+        for (int key : order.keys(size, 42)) {
+            left.insert(key);
+        }
+        right = new AVLTree<>(Integer::compareTo);
+        int offset = 2 * size;
+        for (int key : order.keys(rightSize, 43)) {
+            right.insert(offset + key);
+        }
+    }
+
+    @Benchmark
+    public AVLTree<Integer> join() {
+        return AVLTree.join(left, right);
+    }
+
+    @Benchmark
+    public AVLTree<Integer> clear() {
+        left.clear();
+        return left;
+    }
+}
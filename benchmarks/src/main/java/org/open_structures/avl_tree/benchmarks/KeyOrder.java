@@ -0,0 +1,52 @@
+package org.open_structures.avl_tree.benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * Order in which keys are fed into a tree. Every order produces the same set of keys: even numbers from 0 to 2 * (size - 1),
+ * so odd numbers are always free to be inserted.
+ */
+public enum KeyOrder {
+    SEQUENTIAL {
+        @Override
+        int[] keys(int size, long seed) {
+            int[] keys = new int[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = 2 * i;
+            }
+            return keys;
+        }
+    },
+    RANDOM {
+        @Override
+        int[] keys(int size, long seed) {
+            int[] keys = SEQUENTIAL.keys(size, seed);
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = keys[i];
+                keys[i] = keys[j];
+                keys[j] = tmp;
+            }
+            return keys;
+        }
+    },
+    /**
+     * Alternates between the two ends of the key range and converges on the middle, so every key lands in the deepest gap
+     * of the tree and double rotations happen all the time.
+     */
+    ADVERSARIAL {
+        @Override
+        int[] keys(int size, long seed) {
+            int[] keys = new int[size];
+            int low = 0;
+            int high = size - 1;
+            for (int i = 0; i < size; i++) {
+                keys[i] = 2 * (i % 2 == 0 ? low++ : high--);
+            }
+            return keys;
+        }
+    };
+
+    abstract int[] keys(int size, long seed);
+}
@@ -0,0 +1,41 @@
+package org.open_structures.avl_tree.benchmarks;
+
+import org.open_structures.avl_tree.AVLTree;
+import org.open_structures.avl_tree.TreeUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the tree with {@link TreeUtils#print}. Bigger sizes can be passed with {@code -p size=...}, the defaults are
+ * kept small enough for a single run to finish in reasonable time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrintBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    @Param({"SEQUENTIAL", "RANDOM"})
+    private KeyOrder order;
+
+    private AVLTree<Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = new AVLTree<>(Integer::compareTo);
+        for (int key : order.keys(size, 42)) {
+            tree.insert(key);
+        }
+    }
+
+    @Benchmark
+    public String print() {
+        return TreeUtils.print(tree);
+    }
+}
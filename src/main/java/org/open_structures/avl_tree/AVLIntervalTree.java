@@ -0,0 +1,192 @@
+package org.open_structures.avl_tree;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Interval tree on top of {@link AugmentedAVLTree}. Intervals are ordered by their starts, and every subtree keeps the
+ * greatest end of its intervals, so a query skips the subtrees that end before it and the ones that start after it.
+ * <p>
+ * Intervals are half-open, see {@link Interval}. They are indexed by {@link Object#equals(Object)} and
+ * {@link Object#hashCode()}, so the tree can hold different intervals with the same start and end, but not equal ones.
+ *
+ * @param <P> type of the points
+ * @param <I> type of the intervals
+ */
+public class AVLIntervalTree<P, I extends Interval<P>> implements Iterable<I> {
+
+    private final Comparator<? super P> pointComparator;
+    private final AugmentedAVLTree<I, P> tree;
+
+    public AVLIntervalTree(Comparator<? super P> pointComparator) {
+        this.pointComparator = requireNonNull(pointComparator);
+        Comparator<I> byStart = Comparator.comparing(Interval::getStart, pointComparator);
+        this.tree = new AugmentedAVLTree<>(byStart.thenComparing(Interval::getEnd, pointComparator), Augmentation.maximum(Interval::getEnd, pointComparator));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the interval doesn't end after its start or the tree already has it
+     */
+    public void insert(I interval) {
+        checkInterval(interval);
+
+        tree.insert(interval);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the tree doesn't have the interval
+     */
+    public void delete(I interval) {
+        tree.delete(interval);
+    }
+
+    public boolean contains(I interval) {
+        return tree.contains(interval);
+    }
+
+    public int size() {
+        return tree.size();
+    }
+
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    public void clear() {
+        tree.clear();
+    }
+
+    /**
+     * @return intervals that contain the point, ordered by their starts
+     */
+    public List<I> overlapping(P point) {
+        if (point == null) {
+            throw new IllegalArgumentException();
+        }
+
+        List<I> overlapping = new ArrayList<>();
+        collectOverlapping(point, point, true, overlapping);
+        return overlapping;
+    }
+
+    /**
+     * Finds the intervals that share at least one point with the given one. Intervals that start within the given one
+     * follow each other in the tree, so they are walked through from the first of them in O(log n + k). Intervals that
+     * start before it are searched for only in subtrees that have an interval ending after its start. Found intervals
+     * can be scattered among those that end too early, so that part takes O(log n + k log(n / k)) for k found intervals.
+     * That is O(log n) if nothing overlaps.
+     *
+     * @return intervals that overlap the given one, ordered by their starts
+     */
+    public List<I> overlapping(Interval<P> interval) {
+        checkInterval(interval);
+
+        List<I> overlapping = new ArrayList<>();
+        collectOverlapping(interval.getStart(), interval.getEnd(), false, overlapping);
+        return overlapping;
+    }
+
+    /**
+     * Same as checking that {@link #overlapping(Interval)} is not empty, but stops at the first overlapping interval,
+     * so it takes O(log n).
+     */
+    public boolean overlapsAny(Interval<P> interval) {
+        checkInterval(interval);
+
+        return findOverlapping(tree.getRoot(), interval.getStart(), interval.getEnd()) != null;
+    }
+
+    /**
+     * @return iterator over the intervals ordered by their starts, and by their ends where starts are equal
+     */
+    @Override
+    public Iterator<I> iterator() {
+        return tree.iterator();
+    }
+
+    @Override
+    public String toString() {
+        return tree.toString();
+    }
+
+    /**
+     * Collects the intervals that start before the start and end after it, then the ones that start within the range.
+     * Both parts come in the order of the tree, so the result is ordered by starts.
+     *
+     * @param endInclusive true if intervals starting right at the end overlap, which is the case for a point
+     */
+    private void collectOverlapping(P start, P end, boolean endInclusive, List<I> overlapping) {
+        collectStartingBefore(tree.getRoot(), start, overlapping);
+
+        AVLNode<I> node = firstStartingFrom(start);
+        for (; node != null; node = TreeUtils.successor(node)) {
+            int order = pointComparator.compare(node.getValue().getStart(), end);
+            if (order > 0 || (order == 0 && !endInclusive)) { // this interval and the following ones start too late
+                break;
+            }
+            overlapping.add(node.getValue()); // it ends after its start, which is not before the start of the range
+        }
+    }
+
+    // intervals that start before the point and end after it
+    private void collectStartingBefore(AVLNode<I> node, P point, List<I> overlapping) {
+        if (node == null || pointComparator.compare(tree.aggregate(node), point) <= 0) { // everything here ends too early
+            return;
+        }
+        collectStartingBefore(node.getLeft(), point, overlapping);
+        I interval = node.getValue();
+        if (pointComparator.compare(interval.getStart(), point) >= 0) { // this interval and the ones to the right start too late
+            return;
+        }
+        if (pointComparator.compare(interval.getEnd(), point) > 0) {
+            overlapping.add(interval);
+        }
+        collectStartingBefore(node.getRight(), point, overlapping);
+    }
+
+    private AVLNode<I> firstStartingFrom(P point) {
+        AVLNode<I> first = null;
+        AVLNode<I> node = tree.getRoot();
+        while (node != null) {
+            if (pointComparator.compare(node.getValue().getStart(), point) >= 0) {
+                first = node;
+                node = node.getLeft();
+            } else {
+                node = node.getRight();
+            }
+        }
+        return first;
+    }
+
+    private I findOverlapping(AVLNode<I> node, P start, P end) {
+        while (node != null && pointComparator.compare(tree.aggregate(node), start) > 0) {
+            I interval = node.getValue();
+            AVLNode<I> left = node.getLeft();
+            // if the left subtree has an interval ending after the start, either one of its intervals overlaps or all of
+            // them start at the end or later, and then so do the rest of the intervals
+            if (left != null && pointComparator.compare(tree.aggregate(left), start) > 0) {
+                node = left;
+            } else if (pointComparator.compare(interval.getStart(), end) >= 0) {
+                return null;
+            } else if (pointComparator.compare(interval.getEnd(), start) > 0) {
+                return interval;
+            } else {
+                node = node.getRight();
+            }
+        }
+        return null;
+    }
+
+    private void checkInterval(Interval<P> interval) {
+        if (interval == null || interval.getStart() == null || interval.getEnd() == null) {
+            throw new IllegalArgumentException();
+        }
+        if (pointComparator.compare(interval.getStart(), interval.getEnd()) >= 0) {
+            throw new IllegalArgumentException("Interval has to end after its start, got " + interval.getStart() + " and " + interval.getEnd());
+        }
+    }
+}
@@ -1,48 +1,385 @@
 package org.open_structures.avl_tree;
 
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import static java.lang.Math.log;
 import static java.lang.Math.max;
 import static java.util.Objects.requireNonNull;
 
 
-public class AVLTree<T> {
+public class AVLTree<T> implements Iterable<T> {
+
+    // snapshot format: header of magic, version, mode flags and node count, then nodes in pre-order
+    private static final int SNAPSHOT_MAGIC = 0x41564c54; // "AVLT"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int INDEXED_FLAG = 1;
+    private static final int MULTISET_FLAG = 2;
+    private static final int HAS_LEFT = 1;
+    private static final int HAS_RIGHT = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // AVL trees of up to Integer.MAX_VALUE nodes have 44 levels at most, the height of a leaf being 0
+    private static final int MAX_HEIGHT = 43;
 
     private final Comparator<? super T> comparator;
-    private final Map<T, InternalAVLNode<T>> nodesMap = new HashMap<>();
+    private final boolean multiset;
+    private Map<T, InternalAVLNode<T>> nodesMap;
 
     private InternalAVLNode<T> root;
+    private StatsRecorder stats;
+    private InternalAVLNode<T> pooledNodes; // linked through their right children
+    private int pooledNodesCount;
+    private int nodePoolCapacity;
 
+    /**
+     * Creates a tree that keeps its elements indexed by {@link Object#equals(Object)} and {@link Object#hashCode()},
+     * so elements are located in O(1). The order of elements is defined by the comparator.
+     */
     public AVLTree(Comparator<? super T> comparator) {
+        this(comparator, true);
+    }
+
+    AVLTree(Comparator<? super T> comparator, boolean indexed) {
+        this(comparator, indexed, false);
+    }
+
+    private AVLTree(Comparator<? super T> comparator, boolean indexed, boolean multiset) {
         this.comparator = requireNonNull(comparator);
+        this.nodesMap = indexed ? new HashMap<>() : null;
+        this.multiset = multiset;
     }
 
     /**
-     * Joins two trees given that every element of the left tree is not greater than any element of the right one.
+     * Creates a tree that has no index next to it. Elements are located by descending from the root, so the comparator
+     * alone defines which elements are equal, same as in {@link TreeSet}. Every element costs a single tree node.
      */
-    public static <T> AVLTree<T> join(AVLTree<T> left, AVLTree<T> right) {
-        if (left == null || right == null) {
+    public static <T> AVLTree<T> indexFree(Comparator<? super T> comparator) {
+        return new AVLTree<>(comparator, false);
+    }
+
+    /**
+     * Creates an index-free tree that keeps equal values, as defined by the comparator, in a single node along with their
+     * count. Inserting a value that is already there increments its count, and deleting it decrements the count, both
+     * in O(log n). Size, rank, select and iteration count every copy of a value.
+     */
+    public static <T> AVLTree<T> multiset(Comparator<? super T> comparator) {
+        return new AVLTree<>(comparator, false, true);
+    }
+
+    /**
+     * Builds a perfectly balanced tree out of values that are already sorted. It takes O(n) and no rotations, the
+     * comparator is only used to check that every value is not less than the previous one.
+     */
+    public static <T> AVLTree<T> fromSorted(Comparator<? super T> comparator, List<? extends T> sortedValues) {
+        return fromSorted(comparator, sortedValues, true);
+    }
+
+    /**
+     * Same as {@link #fromSorted(Comparator, List)}, but builds an index-free tree, see {@link #indexFree(Comparator)}.
+     * Nothing is put into an index, so building takes a single allocation per value. Values have to be strictly
+     * ascending, since an index-free tree can't have equal values.
+     */
+    public static <T> AVLTree<T> indexFreeFromSorted(Comparator<? super T> comparator, List<? extends T> sortedValues) {
+        return fromSorted(comparator, sortedValues, false);
+    }
+
+    /**
+     * Same as {@link #indexFreeFromSorted(Comparator, List)} for values that come one by one.
+     */
+    public static <T> AVLTree<T> indexFreeFromSorted(Comparator<? super T> comparator, Iterator<? extends T> sortedValues) {
+        if (sortedValues == null) {
             throw new IllegalArgumentException();
         }
-        if (!left.comparator.equals(right.comparator)) {
-            throw new IllegalArgumentException("trees have different comparators and therefore can't be joined into single search tree");
+
+        List<T> values = new ArrayList<>();
+        sortedValues.forEachRemaining(values::add);
+        return fromSorted(comparator, values, false);
+    }
+
+    private static <T> AVLTree<T> fromSorted(Comparator<? super T> comparator, List<? extends T> sortedValues, boolean indexed) {
+        if (sortedValues == null) {
+            throw new IllegalArgumentException();
+        }
+
+        AVLTree<T> tree = new AVLTree<>(comparator, indexed);
+        List<InternalAVLNode<T>> nodes = new ArrayList<>(sortedValues.size());
+        for (T value : sortedValues) {
+            if (value == null) {
+                throw new IllegalArgumentException("null is not allowed");
+            }
+            if (!nodes.isEmpty()) {
+                T previous = nodes.get(nodes.size() - 1).value;
+                int order = tree.compare(previous, value);
+                if (order > 0) {
+                    throw new IllegalArgumentException("Values are not sorted: " + value + " goes after " + previous);
+                }
+                if (order == 0 && !indexed) {
+                    throw new IllegalArgumentException("Index-free trees can't have equal values, got " + value + " after " + previous);
+                }
+            }
+            nodes.add(new InternalAVLNode<>(value));
+        }
+        tree.index(nodes);
+        tree.root = buildBalanced(nodes.iterator(), nodes.size());
+
+        return tree;
+    }
+
+    /**
+     * Same as {@link #fromSorted(Comparator, List)} for an array of sorted values.
+     */
+    public static <T> AVLTree<T> fromSorted(Comparator<? super T> comparator, T[] sortedValues) {
+        if (sortedValues == null) {
+            throw new IllegalArgumentException();
+        }
+
+        return fromSorted(comparator, Arrays.asList(sortedValues));
+    }
+
+    /**
+     * Same as {@link #fromSorted(Comparator, List)} for values that come one by one. The values are buffered first, since
+     * the shape of the tree depends on their number.
+     */
+    public static <T> AVLTree<T> fromSorted(Comparator<? super T> comparator, Iterator<? extends T> sortedValues) {
+        if (sortedValues == null) {
+            throw new IllegalArgumentException();
+        }
+
+        List<T> values = new ArrayList<>();
+        sortedValues.forEachRemaining(values::add);
+        return fromSorted(comparator, values);
+    }
+
+    /**
+     * Reads a tree written by {@link #writeTo(OutputStream, ElementCodec)}. Nodes are linked into exactly the shape they
+     * had, so it takes O(n) without any rotations or calls to the comparator. Indexed trees also rebuild the index.
+     * The stream is buffered, so it may be read past the end of the snapshot.
+     *
+     * @param comparator has to order elements the same way as the comparator of the written tree did
+     * @throws IOException if reading fails or the stream is not a snapshot of a tree
+     */
+    public static <T> AVLTree<T> readFrom(InputStream in, Comparator<? super T> comparator, ElementCodec<? extends T> codec) throws IOException {
+        if (in == null || codec == null) {
+            throw new IllegalArgumentException();
+        }
+
+        DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        if (dataIn.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a snapshot of a tree");
+        }
+        int version = dataIn.readUnsignedByte();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int flags = dataIn.readUnsignedByte();
+        int nodeCount = dataIn.readInt();
+        if (nodeCount < 0) {
+            throw new IOException("Snapshot has a negative number of nodes " + nodeCount);
+        }
+        AVLTree<T> tree = new AVLTree<>(comparator, (flags & INDEXED_FLAG) != 0, (flags & MULTISET_FLAG) != 0);
+        if (tree.isIndexed()) {
+            tree.nodesMap = new HashMap<>((int) (nodeCount / 0.75f) + 1);
         }
+        tree.root = nodeCount > 0 ? tree.readNode(dataIn, codec, MAX_HEIGHT) : null;
+        int readCount = tree.multiset ? countNodes(tree.root) : size(tree.root);
+        if (readCount != nodeCount) {
+            throw new IOException("Snapshot has " + readCount + " nodes instead of " + nodeCount);
+        }
+        return tree;
+    }
+
+    /**
+     * Same as {@link #readFrom(InputStream, Comparator, ElementCodec)}, reads from the current position of the channel.
+     * The position may end up past the end of the snapshot.
+     */
+    public static <T> AVLTree<T> readFrom(FileChannel channel, Comparator<? super T> comparator, ElementCodec<? extends T> codec) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException();
+        }
+
+        return readFrom(Channels.newInputStream(channel), comparator, codec);
+    }
+
+    /**
+     * Joins two trees given that every element of the left tree is not greater than any element of the right one.
+     * Nodes of both trees are linked into the joined tree as they are, so it takes O(log n) for index-free trees.
+     * Indexed trees also move the index entries of the smaller tree into the index of the bigger one.
+     * <p>
+     * The returned tree is one of the given trees, the other one is left empty.
+     */
+    public static <T> AVLTree<T> join(AVLTree<T> left, AVLTree<T> right) {
+        checkCombinable(left, right);
 
         if (left.isEmpty()) {
             return right;
         } else if (right.isEmpty()) {
             return left;
         } else {
-            Comparator<? super T> comparator = left.comparator;
             AVLNode<T> leftRightmost = TreeUtils.getRightmost(left.root);
             AVLNode<T> rightLeftmost = TreeUtils.getLeftmost(right.root);
-            if (comparator.compare(leftRightmost.getValue(), rightLeftmost.getValue()) > 0) {
+            int order = left.compare(leftRightmost.getValue(), rightLeftmost.getValue());
+            if (order > 0) {
                 throw new IllegalArgumentException("Values of left and right trees either overlap or trees are in the wrong order. Left has to be less than or equal to right");
             }
-            left.delete(leftRightmost.getValue());
-            return join(left, leftRightmost.getValue(), right);
+            if (order == 0 && !left.isIndexed()) {
+                throw new IllegalArgumentException("Index-free trees can't have equal values. Every value of the left tree has to be less than any value of the right one");
+            }
+            return joinTrees(left, right);
+        }
+    }
+
+    /**
+     * Unites two trees with the same comparator. Subtrees are split by the roots of the first tree and joined back, so
+     * it takes O(m log(n/m + 1)) for index-free trees, where m is the size of the smaller tree. Independent subtrees of
+     * big trees are united in parallel in the common {@link ForkJoinPool}, so the comparator may be called from several
+     * threads at once.
+     * <p>
+     * Elements are matched by the comparator. Where both trees have an element, the node of the first tree is kept, so
+     * the nodes of the first tree stay valid. Indexed trees also add the index entries of the nodes taken from the second
+     * tree into the index of the first one, which takes O(m) for the second tree of size m. Multisets add up the counts of the values that
+     * both trees have.
+     *
+     * @return the first tree, holding elements of both trees, while the second tree is left empty
+     */
+    public static <T> AVLTree<T> union(AVLTree<T> first, AVLTree<T> second) {
+        return combine(SetOperation.UNION, first, second);
+    }
+
+    /**
+     * Intersects two trees with the same comparator in O(m log(n/m + 1)), same way as {@link #union(AVLTree, AVLTree)}
+     * does. The nodes of the first tree are kept. Indexed trees also rebuild the index from the kept nodes, which takes
+     * O(min(n, m)). Multisets keep the lesser of the counts of a value.
+     *
+     * @return the first tree, holding the elements it shares with the second tree, while the second tree is left empty
+     */
+    public static <T> AVLTree<T> intersection(AVLTree<T> first, AVLTree<T> second) {
+        return combine(SetOperation.INTERSECTION, first, second);
+    }
+
+    /**
+     * Subtracts the second tree from the first one in O(m log(n/m + 1)), same way as {@link #union(AVLTree, AVLTree)}
+     * does. Indexed trees also drop the index entries of the removed nodes, which takes O(min(n, m)).
+     * Multisets subtract the counts of the second tree from the counts of the first one.
+     *
+     * @return the first tree, holding its elements that are not in the second tree, while the second tree is left empty
+     */
+    public static <T> AVLTree<T> difference(AVLTree<T> first, AVLTree<T> second) {
+        return combine(SetOperation.DIFFERENCE, first, second);
+    }
+
+    /**
+     * Moves all the elements greater than or equal to the key into a new tree. Only nodes on the search path of the key
+     * are relinked, so it takes O(log n) for index-free trees. Indexed trees also move the index entries of the elements
+     * that go into the new tree.
+     *
+     * @return tree with the elements greater than or equal to the key, while this tree keeps the ones that are less
+     */
+    public AVLTree<T> split(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException();
+        }
+
+        AVLTree<T> greaterOrEqual = newEmptyTree();
+        Split<T> split = split(root, key, comparator, false, stats);
+        InternalAVLNode<T> less = split.less;
+        InternalAVLNode<T> notLess = split.greater;
+        root = less;
+        greaterOrEqual.root = notLess;
+        if (isIndexed()) { // entries of the smaller side move into a new index
+            if (size(notLess) <= size(less)) {
+                forEachNode(notLess, node -> greaterOrEqual.nodesMap.put(node.value, nodesMap.remove(node.value)));
+            } else {
+                greaterOrEqual.nodesMap = nodesMap;
+                nodesMap = new HashMap<>();
+                forEachNode(less, node -> nodesMap.put(node.value, greaterOrEqual.nodesMap.remove(node.value)));
+            }
+        }
+
+        return greaterOrEqual;
+    }
+
+    /**
+     * Takes the elements that are greater than or equal to {@code from} and less than {@code to} out of the tree into
+     * a new one. Null bound means there is no bound on that side. The range is cut off by two splits and the rest is
+     * joined back, so only O(log n) nodes are relinked, while an indexed tree also moves the index entries of the
+     * extracted elements, which is O(k).
+     *
+     * @return tree of the same kind with the extracted elements
+     */
+    public AVLTree<T> extractRange(T from, T to) {
+        AVLTree<T> range = newEmptyTree();
+        range.root = cutRange(from, to);
+        if (isIndexed()) {
+            forEachNode(range.root, node -> range.nodesMap.put(node.value, nodesMap.remove(node.value)));
+        }
+        return range;
+    }
+
+    /**
+     * Deletes the elements that are greater than or equal to {@code from} and less than {@code to} in O(log n), plus
+     * O(k) for the index entries of an indexed tree. Null bound means there is no bound on that side.
+     *
+     * @return number of deleted elements
+     */
+    public int deleteRange(T from, T to) {
+        InternalAVLNode<T> range = cutRange(from, to);
+        if (isIndexed()) {
+            forEachNode(range, node -> nodesMap.remove(node.value));
+        }
+        return size(range);
+    }
+
+    // detaches the subtree of the range and joins the rest of the tree back together
+    private InternalAVLNode<T> cutRange(T from, T to) {
+        if (from != null && to != null && compare(from, to) > 0) {
+            throw new IllegalArgumentException("Range can't start at " + from + " after its end " + to);
+        }
+
+        Split<T> atFrom = from != null ? split(root, from, comparator, false, stats) : null;
+        InternalAVLNode<T> notLess = atFrom != null ? atFrom.greater : root;
+        Split<T> atTo = to != null ? split(notLess, to, comparator, false, stats) : null;
+        root = join(atFrom != null ? atFrom.less : null, atTo != null ? atTo.greater : null);
+        return atTo != null ? atTo.less : notLess;
+    }
+
+    /**
+     * Inserts a batch of values. The batch is sorted first. A small batch is then inserted value by value, while a batch
+     * that is big compared to the tree is merged with the nodes of the tree, which are relinked into a perfectly balanced
+     * tree in O(n + m) without any rotations. Nodes returned by earlier insertions stay valid either way.
+     * <p>
+     * If any of the values is already in the tree, none of them are inserted.
+     */
+    public void insertAll(Collection<? extends T> values) {
+        if (values == null) {
+            throw new IllegalArgumentException();
+        }
+
+        List<InternalAVLNode<T>> newNodes = new ArrayList<>(values.size());
+        for (T value : values) {
+            if (value == null) {
+                throw new IllegalArgumentException("null is not allowed");
+            }
+            newNodes.add(newNode(value));
+        }
+        if (newNodes.isEmpty()) {
+            return;
+        }
+        newNodes.sort((a, b) -> compare(a.value, b.value));
+
+        int size = size();
+        if ((long) newNodes.size() * (32 - Integer.numberOfLeadingZeros(size)) < size) {
+            insertOneByOne(newNodes);
+        } else {
+            List<InternalAVLNode<T>> mergedNodes = merge(newNodes);
+            index(newNodes);
+            root = buildBalanced(mergedNodes.iterator(), mergedNodes.size());
         }
     }
 
@@ -50,21 +387,245 @@ public class AVLTree<T> {
         if (value == null) {
             throw new IllegalArgumentException("null is not allowed");
         }
-        if (nodesMap.containsKey(value)) {
+
+        return insertNode(newNode(value));
+    }
+
+    /**
+     * Same as {@link #insert(Object)}, but looks for the place of the value starting from the hint instead of the root.
+     * The search climbs from the hint to the closest node that bounds the value, comparing it only with the ancestors
+     * on the side of the value, which takes O(log d) comparisons, where d is the number of elements between the hint and
+     * the value. Then it descends from that node as usual, which takes up to the height of its subtree. Nodes have no
+     * links to their neighbours on the same level, so the descent isn't bounded by d: a value next to a hint high up
+     * in the tree still takes O(log n). Hints at the bottom of the tree, such as the last inserted node of nearly sorted
+     * input, keep both parts short. In particular, appending the greatest value next to the node of the previous
+     * greatest value takes two comparisons. The climb goes on to the root without comparisons to check that the hint
+     * belongs to the tree, and sizes of the subtrees are updated on the way back up after the insertion, so an insertion
+     * still takes two O(log n) walks along parent links.
+     *
+     * @param hint node of this tree, preferably one close to the value
+     */
+    public AVLNode<T> insertNear(AVLNode<T> hint, T value) {
+        InternalAVLNode<T> hintNode = checkHint(hint);
+        if (value == null) {
+            throw new IllegalArgumentException("null is not allowed");
+        }
+
+        return insertNode(newNode(value), hintNode);
+    }
+
+    /**
+     * Creates a node for a new value, subclasses of the tree create their own kind of nodes.
+     */
+    InternalAVLNode<T> newNode(T value) {
+        if (multiset) {
+            return new CountedNode<>(value);
+        }
+        InternalAVLNode<T> node = pooledNodes;
+        if (node == null) {
+            return new InternalAVLNode<>(value);
+        }
+        pooledNodes = node.right;
+        pooledNodesCount--;
+        node.reset(value);
+        return node;
+    }
+
+    /**
+     * Makes the tree keep up to the given number of deleted nodes and reuse them for inserted values instead of
+     * allocating new ones. Only plain nodes are pooled, multisets and trees of other kinds of nodes allocate as usual.
+     * <p>
+     * A node deleted from a tree with a pool is no longer a handle of its value: {@link AVLNode#getValue()} returns null
+     * while the node is in the pool, and once the node is reused it stands for another value. So a node returned by
+     * {@link #insert(Object)} or {@link #find(Object)} must not be used after its value is deleted.
+     *
+     * @param capacity greatest number of nodes kept for reuse
+     */
+    public void enableNodePool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity has to be positive, got " + capacity);
+        }
+        nodePoolCapacity = capacity;
+        while (pooledNodesCount > capacity) {
+            pooledNodes = pooledNodes.right;
+            pooledNodesCount--;
+        }
+    }
+
+    /**
+     * Drops the pooled nodes, deleted nodes are left to the garbage collector from now on.
+     */
+    public void disableNodePool() {
+        nodePoolCapacity = 0;
+        pooledNodes = null;
+        pooledNodesCount = 0;
+    }
+
+    private void recycle(InternalAVLNode<T> node) {
+        if (pooledNodesCount < nodePoolCapacity && node.getClass() == InternalAVLNode.class) {
+            node.value = null;
+            node.right = pooledNodes;
+            pooledNodes = node;
+            pooledNodesCount++;
+        }
+    }
+
+    /**
+     * @return empty tree of the same kind as this one
+     */
+    AVLTree<T> newEmptyTree() {
+        return new AVLTree<>(comparator, isIndexed(), multiset);
+    }
+
+    /**
+     * Trees can only exchange nodes if their nodes are of the same kind.
+     */
+    boolean hasNodesCompatibleWith(AVLTree<T> other) {
+        return getClass() == other.getClass();
+    }
+
+    /**
+     * Inserts a new node, which lets wrappers of the tree keep their own data in subclasses of the node.
+     */
+    AVLNode<T> insertNode(InternalAVLNode<T> newNode) {
+        return insertNode(newNode, null);
+    }
+
+    private AVLNode<T> insertNode(InternalAVLNode<T> newNode, InternalAVLNode<T> hint) {
+        T value = newNode.value;
+        if (isIndexed() && nodesMap.containsKey(value)) {
             throw new IllegalArgumentException("Tree already has value " + value + ". Addition of duplicated (equal) values is not allowed");
         }
 
-        InternalAVLNode<T> newNode = new InternalAVLNode<>(value);
+        StatsRecorder stats = this.stats;
+        if (stats == null) {
+            return insertNewNode(newNode, hint);
+        }
+        stats.begin();
+        try {
+            AVLNode<T> node = insertNewNode(newNode, hint);
+            stats.insertions++;
+            return node;
+        } finally {
+            stats.end("insert", size());
+        }
+    }
+
+    private AVLNode<T> insertNewNode(InternalAVLNode<T> newNode, InternalAVLNode<T> hint) {
+        T value = newNode.value;
         if (root == null) {
             root = newNode;
         } else {
-            insert(root, newNode);
+            InternalAVLNode<T> node = insert(newNode, hint != null ? closestBound(hint, value) : root);
+            if (node != newNode) { // a multiset already has the value
+                return node;
+            }
+        }
+        if (isIndexed()) {
+            nodesMap.put(value, newNode);
         }
-        nodesMap.put(value, newNode);
 
         return newNode;
     }
 
+    /**
+     * @return node that holds the value equal to the given one or null if there is no such node
+     */
+    public AVLNode<T> find(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException();
+        }
+
+        return findNode(value);
+    }
+
+    /**
+     * Same as {@link #find(Object)}, but an index-free tree searches from the hint as {@link #insertNear} does: O(log d)
+     * comparisons on the climb plus up to the height of the subtree it descends from, while the climb goes on to the
+     * root to check the hint. Indexed trees look the value up in their index and don't climb from the hint at all.
+     *
+     * @param hint node of this tree, preferably one close to the value
+     */
+    public AVLNode<T> findNear(AVLNode<T> hint, T value) {
+        InternalAVLNode<T> hintNode = checkHint(hint);
+        if (value == null) {
+            throw new IllegalArgumentException("null is not allowed");
+        }
+        if (isIndexed()) {
+            return nodesMap.get(value);
+        }
+
+        InternalAVLNode<T> node = closestBound(hintNode, value);
+        while (node != null) {
+            visit();
+            int c = compare(value, node.value);
+            if (c == 0) {
+                return node;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public boolean contains(T value) {
+        return find(value) != null;
+    }
+
+    /**
+     * @return number of copies of the value in a multiset, 1 or 0 in other trees
+     */
+    public int count(T value) {
+        InternalAVLNode<T> node = (InternalAVLNode<T>) find(value);
+        return node != null ? node.count() : 0;
+    }
+
+    /**
+     * @return true if the tree keeps equal values as counts, see {@link #multiset(Comparator)}
+     */
+    public boolean isMultiset() {
+        return multiset;
+    }
+
+    /**
+     * @return node with the smallest value greater than or equal to the given one, null if there is no such node
+     */
+    public AVLNode<T> ceiling(T value) {
+        return ceilingNode(checkValue(value), true);
+    }
+
+    /**
+     * @return node with the smallest value strictly greater than the given one, null if there is no such node
+     */
+    public AVLNode<T> higher(T value) {
+        return ceilingNode(checkValue(value), false);
+    }
+
+    /**
+     * @return node with the greatest value less than or equal to the given one, null if there is no such node
+     */
+    public AVLNode<T> floor(T value) {
+        return floorNode(checkValue(value), true);
+    }
+
+    /**
+     * @return node with the greatest value strictly less than the given one, null if there is no such node
+     */
+    public AVLNode<T> lower(T value) {
+        return floorNode(checkValue(value), false);
+    }
+
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * @return true if elements are indexed by {@link Object#equals(Object)} and {@link Object#hashCode()}, false for
+     * index-free trees
+     */
+    public boolean isIndexed() {
+        return nodesMap != null;
+    }
+
     /**
      * @return null if the tree is empty
      */
@@ -72,6 +633,120 @@ public class AVLTree<T> {
         return root;
     }
 
+    /**
+     * @return number of elements in the tree
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * @return number of elements that are less than the given value, whether the value belongs to the tree or not
+     */
+    public int rank(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException();
+        }
+
+        int rank = 0;
+        InternalAVLNode<T> node = root;
+        while (node != null) {
+            if (compare(value, node.value) <= 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + node.count();
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * @param index zero based position of the element in ascending order
+     * @return node that holds the element with the given index, which is one of its copies in a multiset
+     */
+    public AVLNode<T> select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size());
+        }
+
+        InternalAVLNode<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index < leftSize + node.count()) {
+                return node;
+            } else {
+                index -= leftSize + node.count();
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * @return iterator over the elements in ascending order
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(null, null);
+    }
+
+    /**
+     * Iterates over the elements that are greater than or equal to {@code from} and less than {@code to} in ascending
+     * order. Null bound means there is no bound on that side. Every step follows the links of the nodes, so iteration
+     * doesn't allocate anything. {@link Iterator#remove()} is supported, any other modification of the tree invalidates
+     * the iterator.
+     */
+    public Iterator<T> iterator(T from, T to) {
+        InternalAVLNode<T> first = from != null ? ceilingNode(from, true) : root != null ? getLeftmost(root) : null;
+        return new NodeIterator(first, from, to, false);
+    }
+
+    /**
+     * Splits by handing off the left subtree of the node it's at, so the halves are balanced and splitting takes O(1).
+     * Sizes are known exactly at every split. The tree must not be modified while the spliterator is in use.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new NodeSpliterator<>(null, root, comparator, characteristics());
+    }
+
+    /**
+     * @return sequential stream of the elements in ascending order
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return parallel stream of the elements, see {@link #spliterator()}
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    private int characteristics() {
+        int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+        return multiset ? characteristics : characteristics | Spliterator.DISTINCT;
+    }
+
+    /**
+     * @return iterator over the elements in descending order
+     */
+    public Iterator<T> descendingIterator() {
+        return descendingIterator(null, null);
+    }
+
+    /**
+     * Same as {@link #iterator(Object, Object)}, but goes in descending order, from the greatest element less than
+     * {@code to} down to {@code from}.
+     */
+    public Iterator<T> descendingIterator(T from, T to) {
+        InternalAVLNode<T> first = to != null ? floorNode(to, false) : root != null ? getRightmost(root) : null;
+        return new NodeIterator(first, from, to, true);
+    }
+
     /**
      * @return true if the tree has no nodes
      */
@@ -79,216 +754,788 @@ public class AVLTree<T> {
         return getRoot() == null;
     }
 
+    /**
+     * Deletes the value, a multiset deletes one copy of it.
+     */
     public void delete(T key) {
         if (key == null) {
             throw new IllegalArgumentException();
         }
-        if (!nodesMap.containsKey(key)) {
-            throw new IllegalArgumentException(key + " does not belong to this tree");
+        StatsRecorder stats = this.stats;
+        if (stats == null) {
+            deleteCopy(findExisting(key));
+            return;
+        }
+        // the lookup is part of the deletion, so the event starts before it
+        stats.begin();
+        try {
+            deleteCopy(findExisting(key));
+            stats.deletions++;
+        } finally {
+            stats.end("delete", size());
+        }
+    }
+
+    private InternalAVLNode<T> findExisting(T key) {
+        InternalAVLNode<T> node = findNode(key);
+        if (node == null) {
+            throw new IllegalArgumentException(key + " does not belong to this tree");
+        }
+        return node;
+    }
+
+    /**
+     * Deletes the node without looking it up. The node has to be the one returned by this tree and not deleted yet,
+     * which is checked by climbing to its root in O(log n). A multiset deletes the node along with all the copies of its
+     * value.
+     */
+    public void delete(AVLNode<T> node) {
+        InternalAVLNode<T> nodeToDelete = checkOwnNode(node);
+
+        StatsRecorder stats = this.stats;
+        if (stats == null) {
+            delete(nodeToDelete);
+            return;
+        }
+        stats.begin();
+        try {
+            delete(nodeToDelete);
+            stats.deletions++;
+        } finally {
+            stats.end("delete", size());
+        }
+    }
+
+    private void delete(InternalAVLNode<T> nodeToDelete) {
+        final InternalAVLNode<T> parent = nodeToDelete.parent;
+        if (TreeUtils.isLeaf(nodeToDelete)) { // then just deleted it
+            if (parent != null) {
+                if (TreeUtils.isLeftChild(nodeToDelete)) {
+                    parent.left = null;
+                } else {
+                    parent.right = null;
+                }
+                retrace(parent);
+            } else { // means the tree consists of a single node
+                this.root = null;
+            }
+
+        } else {
+            if (nodeToDelete.getLeft() == null || nodeToDelete.getRight() == null) { // if node has only one child then we replace the node with the child
+                if (parent != null) {
+                    if (nodeToDelete.getLeft() != null) {
+                        if (TreeUtils.isLeftChild(nodeToDelete)) {
+                            parent.left = nodeToDelete.left;
+                        } else {
+                            parent.right = nodeToDelete.left;
+                        }
+                        nodeToDelete.left.parent = parent;
+                    } else {
+                        if (TreeUtils.isLeftChild(nodeToDelete)) {
+                            parent.left = nodeToDelete.right;
+                        } else {
+                            parent.right = nodeToDelete.right;
+                        }
+                        nodeToDelete.right.parent = parent;
+                    }
+                    retrace(parent);
+                } else {
+                    if (nodeToDelete.getLeft() != null) {
+                        root = nodeToDelete.left;
+                    } else {
+                        root = nodeToDelete.right;
+                    }
+                    root.parent = null;
+                }
+            } else { // node has both children
+                InternalAVLNode<T> leftmost = getLeftmost(nodeToDelete.right);
+                InternalAVLNode<T> nodeToReBalance = leftmost;
+                InternalAVLNode<T> parentOfLeftmost = leftmost.parent;
+                if (!parentOfLeftmost.equals(nodeToDelete)) {
+                    parentOfLeftmost.setLeft(leftmost.right);
+                    nodeToReBalance = parentOfLeftmost;
+                    leftmost.setRight(nodeToDelete.right);
+                }
+                leftmost.left = nodeToDelete.left;
+                leftmost.left.parent = leftmost;
+                if (parent != null) {
+                    if (TreeUtils.isLeftChild(nodeToDelete)) {
+                        parent.left = leftmost;
+                    } else {
+                        parent.right = leftmost;
+                    }
+                    leftmost.parent = parent;
+                } else {
+                    root = leftmost;
+                    leftmost.parent = null;
+                }
+                // leftmost took the place of the deleted node, retracing carries on from the height that place had
+                leftmost.height = nodeToDelete.height;
+                retrace(nodeToReBalance);
+            }
+        }
+        if (isIndexed()) {
+            nodesMap.remove(nodeToDelete.value);
+        }
+        nodeToDelete.parent = null;
+        nodeToDelete.left = null;
+        nodeToDelete.right = null;
+        recycle(nodeToDelete);
+    }
+
+    private void deleteCopy(InternalAVLNode<T> node) {
+        if (node.count() > 1) {
+            ((CountedNode<T>) node).count--;
+            setSizesToRoot(node);
+        } else {
+            delete(node);
+        }
+    }
+
+    private InternalAVLNode<T> findNode(T value) {
+        if (isIndexed()) {
+            return nodesMap.get(value);
+        }
+        InternalAVLNode<T> node = root;
+        while (node != null) {
+            visit();
+            int c = compare(value, node.value);
+            if (c == 0) {
+                return node;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    // a node belongs to the tree if the root of the tree is its root, deleted nodes have no parent and aren't roots
+    private InternalAVLNode<T> checkOwnNode(AVLNode<T> node) {
+        if (node instanceof InternalAVLNode<T> internalNode && root != null) {
+            InternalAVLNode<T> ancestor = internalNode;
+            while (ancestor.parent != null) {
+                ancestor = ancestor.parent;
+            }
+            if (ancestor == root) {
+                return internalNode;
+            }
+        }
+        throw new IllegalArgumentException(node + " does not belong to this tree");
+    }
+
+    /**
+     * Checks the kind of the hint only, the climb of {@link #closestBound} checks that the hint belongs to the tree.
+     */
+    private InternalAVLNode<T> checkHint(AVLNode<T> hint) {
+        if (hint instanceof InternalAVLNode<T> hintNode && root != null) {
+            return hintNode;
+        }
+        throw new IllegalArgumentException(hint + " does not belong to this tree");
+    }
+
+    /**
+     * Climbs from the hint towards the value. Going up from a left child, the parent is the next greater element
+     * of the subtree, so it's compared with the value, while going up from a right child needs no comparison. The
+     * search starts from the last ancestor before the first one beyond the value, so the value belongs to the subtree of
+     * the returned node, but that subtree may be as high as the tree itself. Past that ancestor the climb goes on to the
+     * root without comparisons, which checks that the hint belongs to the tree in the same walk.
+     *
+     * @return node that the search for the value can descend from: the hint, the closest ancestor between the hint and
+     * the value, or the node that holds the value
+     * @throws IllegalArgumentException if the hint doesn't belong to this tree
+     */
+    private InternalAVLNode<T> closestBound(InternalAVLNode<T> hint, T value) {
+        visit();
+        int c = compare(value, hint.value);
+        InternalAVLNode<T> start = hint;
+        boolean bounded = c == 0;
+        InternalAVLNode<T> node = hint;
+        for (InternalAVLNode<T> parent = node.parent; parent != null; node = parent, parent = parent.parent) {
+            if (bounded || (c > 0 ? parent.left != node : parent.right != node)) {
+                continue;
+            }
+            visit();
+            int order = compare(value, parent.value);
+            if (order == 0) {
+                start = parent;
+                bounded = true;
+            } else if ((order > 0) != (c > 0)) { // the parent is beyond the value
+                bounded = true;
+            } else {
+                start = parent;
+            }
+        }
+        if (node != root) {
+            throw new IllegalArgumentException(hint + " does not belong to this tree");
+        }
+        return start;
+    }
+
+    private static <T> T checkValue(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException();
+        }
+        return value;
+    }
+
+    // the smallest node that is greater than (or equal to, if inclusive) the value
+    private InternalAVLNode<T> ceilingNode(T value, boolean inclusive) {
+        InternalAVLNode<T> ceiling = null;
+        InternalAVLNode<T> node = root;
+        while (node != null) {
+            int c = compare(value, node.value);
+            if (c < 0 || (c == 0 && inclusive)) {
+                ceiling = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return ceiling;
+    }
+
+    // the greatest node that is less than (or equal to, if inclusive) the value
+    private InternalAVLNode<T> floorNode(T value, boolean inclusive) {
+        InternalAVLNode<T> floor = null;
+        InternalAVLNode<T> node = root;
+        while (node != null) {
+            int c = compare(value, node.value);
+            if (c > 0 || (c == 0 && inclusive)) {
+                floor = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return floor;
+    }
+
+    private static <T> InternalAVLNode<T> getLeftmost(InternalAVLNode<T> node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private static <T> InternalAVLNode<T> getRightmost(InternalAVLNode<T> node) {
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    /**
+     * Writes the tree in a compact binary form: a short header and then every node in pre-order, as flags telling which
+     * children it has, its height, the count of copies for multisets, and the element written by the codec. Heights are
+     * checked when the tree is read back. The stream is buffered and flushed, but not closed.
+     */
+    public void writeTo(OutputStream out, ElementCodec<? super T> codec) throws IOException {
+        if (out == null || codec == null) {
+            throw new IllegalArgumentException();
+        }
+
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        dataOut.writeInt(SNAPSHOT_MAGIC);
+        dataOut.writeByte(SNAPSHOT_VERSION);
+        dataOut.writeByte((isIndexed() ? INDEXED_FLAG : 0) | (multiset ? MULTISET_FLAG : 0));
+        int nodeCount = 0;
+        if (root != null) {
+            nodeCount = multiset ? countNodes(root) : root.size;
+        }
+        dataOut.writeInt(nodeCount);
+        if (root != null) {
+            writeNode(root, dataOut, codec);
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * Same as {@link #writeTo(OutputStream, ElementCodec)}, writes at the current position of the channel.
+     */
+    public void writeTo(FileChannel channel, ElementCodec<? super T> codec) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException();
+        }
+
+        writeTo(Channels.newOutputStream(channel), codec);
+    }
+
+    private void writeNode(InternalAVLNode<T> node, DataOutput out, ElementCodec<? super T> codec) throws IOException {
+        out.writeByte((node.left != null ? HAS_LEFT : 0) | (node.right != null ? HAS_RIGHT : 0));
+        out.writeByte(node.height);
+        if (multiset) {
+            out.writeInt(node.count());
+        }
+        codec.write(node.value, out);
+        if (node.left != null) {
+            writeNode(node.left, out, codec);
+        }
+        if (node.right != null) {
+            writeNode(node.right, out, codec);
+        }
+    }
+
+    /**
+     * Reads a subtree in pre-order. Every node is checked to be lower than its parent before its children are read, so
+     * the recursion is as deep as a valid tree at most, whatever the stream has.
+     */
+    private InternalAVLNode<T> readNode(DataInput in, ElementCodec<? extends T> codec, int maxHeight) throws IOException {
+        int children = in.readUnsignedByte();
+        int height = in.readUnsignedByte();
+        if (height > maxHeight) {
+            throw new IOException("Snapshot has a node of height " + height + " where at most " + maxHeight + " fits");
+        }
+        int count = multiset ? in.readInt() : 1;
+        T value = codec.read(in);
+        if (value == null || count < 1) {
+            throw new IOException("Snapshot has a node without an element");
+        }
+        InternalAVLNode<T> node = newNode(value);
+        if (multiset) {
+            ((CountedNode<T>) node).count = count;
+        }
+        if (isIndexed() && nodesMap.putIfAbsent(value, node) != null) {
+            throw new IOException("Snapshot has " + value + " more than once");
+        }
+        if ((children & HAS_LEFT) != 0) {
+            node.setLeft(readNode(in, codec, height - 1));
+        }
+        if ((children & HAS_RIGHT) != 0) {
+            node.setRight(readNode(in, codec, height - 1));
+        }
+        setHeight(node);
+        if (node.height != height) {
+            throw new IOException("Snapshot has a node of height " + height + " where the tree has " + node.height);
+        }
+        if (node.balanceFactor() < -1 || node.balanceFactor() > 1) {
+            throw new IOException("Snapshot has an unbalanced node " + value);
+        }
+        return node;
+    }
+
+    private static <T> int countNodes(InternalAVLNode<T> subtreeRoot) {
+        int[] count = new int[1];
+        forEachNode(subtreeRoot, node -> count[0]++);
+        return count[0];
+    }
+
+    @Override
+    public String toString() {
+        return TreeUtils.print(this);
+    }
+
+    // the rightmost node of the left tree is relinked as the middle one rather than deleted, so it stays out of the node pool
+    private static <T> AVLTree<T> joinTrees(AVLTree<T> left, AVLTree<T> right) {
+        AVLTree<T> joined = left;
+        AVLTree<T> emptied = right;
+        if (left.isIndexed()) {
+            if (left.nodesMap.size() < right.nodesMap.size()) {
+                joined = right;
+                emptied = left;
+            }
+            joined.nodesMap.putAll(emptied.nodesMap);
+            emptied.nodesMap.clear();
+        }
+        InternalAVLNode<T> joinedRoot = join(left.root, right.root);
+        emptied.root = null;
+        joined.root = joinedRoot;
+
+        return joined;
+    }
+
+    /**
+     * Links two subtrees through the middle node, which has to be detached. Every value of the left subtree has to be
+     * not greater than the middle one and every value of the right subtree not less than it. The taller subtree is
+     * descended along its inner spine to the height of the other one, where the middle node is attached, and then
+     * rebalanced on the way back up. That makes it O(|height(left) - height(right)|).
+     *
+     * @return root of the joined subtree
+     */
+    private static <T> InternalAVLNode<T> join(InternalAVLNode<T> left, InternalAVLNode<T> middle, InternalAVLNode<T> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            InternalAVLNode<T> spineNode = left;
+            while (height(spineNode.right) > rightHeight + 1) {
+                spineNode = spineNode.right;
+            }
+            middle.setLeft(spineNode.right);
+            middle.setRight(right);
+            spineNode.setRight(middle);
+        } else if (rightHeight > leftHeight + 1) {
+            InternalAVLNode<T> spineNode = right;
+            while (height(spineNode.left) > leftHeight + 1) {
+                spineNode = spineNode.left;
+            }
+            middle.setRight(spineNode.left);
+            middle.setLeft(left);
+            spineNode.setLeft(middle);
+        } else {
+            middle.setLeft(left);
+            middle.setRight(right);
+        }
+        return reBalanceToRoot(middle);
+    }
+
+    /**
+     * Rebalances every node from the given one up to the root of its subtree.
+     *
+     * @return root of the subtree
+     */
+    private static <T> InternalAVLNode<T> reBalanceToRoot(InternalAVLNode<T> node) {
+        while (true) {
+            node = reBalance(node);
+            if (node.parent == null) {
+                return node;
+            }
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Joins two subtrees without a middle node: the rightmost node of the left subtree is taken out and becomes one.
+     *
+     * @return root of the joined subtree
+     */
+    private static <T> InternalAVLNode<T> join(InternalAVLNode<T> left, InternalAVLNode<T> right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        }
+        InternalAVLNode<T> middle = getRightmost(left);
+        InternalAVLNode<T> parentOfMiddle = middle.parent;
+        if (parentOfMiddle == null) {
+            left = detach(middle.left);
+        } else {
+            parentOfMiddle.setRight(middle.left);
+            left = reBalanceToRoot(parentOfMiddle);
+        }
+        middle.left = null;
+        middle.parent = null;
+        return join(left, middle, right);
+    }
+
+    /**
+     * Splits a detached subtree by the key. Nodes on the search path are joined into the side they belong to together
+     * with their subtree on that side, so it takes O(log n).
+     *
+     * @param extractEqual whether the first node found equal to the key is taken out instead of going to the greater side
+     * @param stats        counts the comparisons and the nodes of the search path, null if they are not counted
+     */
+    private static <T> Split<T> split(InternalAVLNode<T> subtreeRoot, T key, Comparator<? super T> comparator, boolean extractEqual,
+                                      StatsRecorder stats) {
+        Split<T> split = new Split<>();
+        InternalAVLNode<T> pathNode = null;
+        boolean pathNodeIsLess = false;
+        for (InternalAVLNode<T> node = subtreeRoot; node != null; node = pathNodeIsLess ? node.right : node.left) {
+            if (stats != null) {
+                stats.nodesVisited++;
+                stats.comparisons++;
+            }
+            int order = comparator.compare(node.value, key);
+            if (extractEqual && order == 0) {
+                split.equal = node;
+                split.less = detach(node.left);
+                split.greater = detach(node.right);
+                pathNodeIsLess = pathNode != null && pathNode.right == node;
+                node.left = null;
+                node.right = null;
+                node.parent = null;
+                break;
+            }
+            pathNode = node;
+            pathNodeIsLess = order < 0;
+        }
+
+        // going back up the search path, every node joins the side it belongs to together with its subtree on that side
+        while (pathNode != null) {
+            InternalAVLNode<T> parent = pathNode.parent;
+            boolean parentIsLess = parent != null && parent.right == pathNode;
+            // the child on the search path has already been joined into one of the sides
+            InternalAVLNode<T> offPathChild = detach(pathNodeIsLess ? pathNode.left : pathNode.right);
+            pathNode.left = null;
+            pathNode.right = null;
+            pathNode.parent = null;
+            if (pathNodeIsLess) {
+                split.less = join(offPathChild, pathNode, split.less);
+            } else {
+                split.greater = join(split.greater, pathNode, offPathChild);
+            }
+            pathNode = parent;
+            pathNodeIsLess = parentIsLess;
+        }
+        return split;
+    }
+
+    private static <T> void checkCombinable(AVLTree<T> first, AVLTree<T> second) {
+        if (first == null || second == null) {
+            throw new IllegalArgumentException();
+        }
+        if (first == second) {
+            throw new IllegalArgumentException("tree can't be combined with itself");
+        }
+        if (!first.comparator.equals(second.comparator)) {
+            throw new IllegalArgumentException("trees have different comparators and therefore can't be joined into single search tree");
+        }
+        if (first.isIndexed() != second.isIndexed()) {
+            throw new IllegalArgumentException("indexed and index-free trees can't be joined");
+        }
+        if (first.multiset != second.multiset) {
+            throw new IllegalArgumentException("multisets can only be combined with multisets");
         }
+        if (!first.hasNodesCompatibleWith(second)) {
+            throw new IllegalArgumentException("trees with different kinds of nodes can't be joined");
+        }
+    }
 
-        final InternalAVLNode<T> nodeToDelete = nodesMap.get(key);
-        final InternalAVLNode<T> parent = nodeToDelete.parent;
-        if (TreeUtils.isLeaf(nodeToDelete)) { // then just deleted it
-            if (parent != null) {
-                if (TreeUtils.isLeftChild(nodeToDelete)) {
-                    parent.left = null;
-                } else {
-                    parent.right = null;
-                }
-                reBalance(parent);
-            } else { // means the tree consists of a single node
-                this.root = null;
-            }
+    private static <T> AVLTree<T> combine(SetOperation operation, AVLTree<T> first, AVLTree<T> second) {
+        checkCombinable(first, second);
 
-        } else {
-            if (nodeToDelete.getLeft() == null || nodeToDelete.getRight() == null) { // if node has only one child then we replace the node with the child
-                if (parent != null) {
-                    if (nodeToDelete.getLeft() != null) {
-                        if (TreeUtils.isLeftChild(nodeToDelete)) {
-                            parent.left = nodeToDelete.left;
-                        } else {
-                            parent.right = nodeToDelete.left;
-                        }
-                        nodeToDelete.left.parent = parent;
-                    } else {
-                        if (TreeUtils.isLeftChild(nodeToDelete)) {
-                            parent.left = nodeToDelete.right;
-                        } else {
-                            parent.right = nodeToDelete.right;
-                        }
-                        nodeToDelete.right.parent = parent;
-                    }
-                    reBalance(parent);
-                } else {
-                    if (nodeToDelete.getLeft() != null) {
-                        root = nodeToDelete.left;
-                    } else {
-                        root = nodeToDelete.right;
-                    }
-                    root.parent = null;
-                    reBalance(root);
-                }
-            } else { // node has both children
-                InternalAVLNode<T> leftmost = nodesMap.get(TreeUtils.getLeftmost(nodeToDelete.right).getValue());
-                InternalAVLNode<T> nodeToReBalance = leftmost;
-                InternalAVLNode<T> parentOfLeftmost = leftmost.parent;
-                if (!parentOfLeftmost.equals(nodeToDelete)) {
-                    parentOfLeftmost.left = null;
-                    nodeToReBalance = parentOfLeftmost;
-                    leftmost.right = nodeToDelete.right;
+        // elements are matched by the comparator, which may not agree with equals, so the index follows the nodes
+        Queue<InternalAVLNode<T>> reported = first.isIndexed() ? new ConcurrentLinkedQueue<>() : null;
+        SetOperationTask<T> task = new SetOperationTask<>(operation, first.comparator, first.root, second.root, reported);
+        first.root = size(first.root) + size(second.root) < SetOperationTask.PARALLEL_THRESHOLD ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+        second.root = null;
+        if (first.isIndexed()) {
+            switch (operation) {
+                case UNION -> {
+                    reported.forEach(dropped -> second.nodesMap.remove(dropped.value));
+                    first.nodesMap.putAll(second.nodesMap);
                 }
-                leftmost.left = nodeToDelete.left;
-                leftmost.left.parent = leftmost;
-                if (parent != null) {
-                    if (TreeUtils.isLeftChild(nodeToDelete)) {
-                        parent.left = leftmost;
-                    } else {
-                        parent.right = leftmost;
-                    }
-                    leftmost.parent = parent;
-                } else {
-                    root = leftmost;
-                    leftmost.parent = null;
+                case INTERSECTION -> {
+                    first.nodesMap = new HashMap<>();
+                    reported.forEach(kept -> first.nodesMap.put(kept.value, kept));
                 }
-                reBalance(nodeToReBalance);
+                case DIFFERENCE -> reported.forEach(dropped -> first.nodesMap.remove(dropped.value));
             }
+            second.nodesMap.clear();
         }
-        nodesMap.remove(key);
+
+        return first;
     }
 
-    @Override
-    public String toString() {
-        return TreeUtils.print(this);
+    private static <T> int height(InternalAVLNode<T> node) {
+        return node != null ? node.height : -1;
     }
 
-    private static <T> AVLTree<T> join(AVLTree<T> left, T inBetweenValue, AVLTree<T> right) {
-        if (height(left) > height(right) + 1) {
-            return joinRightAVL(left, inBetweenValue, right);
-        } else if (height(right) > height(left) + 1) {
-            return joinLeftAVL(left, inBetweenValue, right);
-        } else {
-            AVLTree<T> joinedTree = new AVLTree<>(left.comparator);
-            joinedTree.root = newNode(left.root, inBetweenValue, right.root);
-            joinedTree.nodesMap.putAll(left.nodesMap);
-            joinedTree.nodesMap.putAll(right.nodesMap);
-            joinedTree.nodesMap.put(inBetweenValue, joinedTree.root);
-            joinedTree.reBalance(joinedTree.root);
-            return joinedTree;
-        }
-    }
-
-    private static <T> InternalAVLNode<T> newNode(InternalAVLNode<T> left, T inBetweenValue, InternalAVLNode<T> right) {
-        InternalAVLNode<T> newRoot = new InternalAVLNode<>(inBetweenValue);
-        if (left != null) {
-            newRoot.left = left;
-            left.parent = newRoot;
-        }
-        if (right != null) {
-            newRoot.right = right;
-            right.parent = newRoot;
-        }
-        return newRoot;
-    }
-
-    // right is greater
-    private static <T> AVLTree<T> joinLeftAVL(AVLTree<T> left, T inBetweenValue, AVLTree<T> right) {
-        AVLTree<T> newTree;
-        if (height(right) > height(left) + 1) { // out of balance
-            AVLTree<T> rightLeft = new AVLTree<>(right.comparator);
-            rightLeft.root = right.root.left;
-            if (rightLeft.root != null) rightLeft.root.parent = null;
-            AVLTree<T> leftJoin = joinLeftAVL(left, inBetweenValue, rightLeft);
-            right.root.left = leftJoin.root;
-            leftJoin.root.parent = right.root;
-            right.nodesMap.putAll(leftJoin.nodesMap);
-            newTree = right;
-        } else {
-            newTree = newAVLTree(right.comparator, left, inBetweenValue, right);
+    private static <T> InternalAVLNode<T> detach(InternalAVLNode<T> subtreeRoot) {
+        if (subtreeRoot != null) {
+            subtreeRoot.parent = null;
         }
-        newTree.reBalance(newTree.root);
+        return subtreeRoot;
+    }
 
-        return newTree;
+    private void insertOneByOne(List<InternalAVLNode<T>> sortedNodes) {
+        for (int i = 0; i < sortedNodes.size(); i++) {
+            try {
+                insertNode(sortedNodes.get(i));
+            } catch (IllegalArgumentException e) {
+                for (int j = 0; j < i; j++) {
+                    delete(sortedNodes.get(j));
+                }
+                throw e;
+            }
+        }
     }
 
-    // left is greater
-    private static <T> AVLTree<T> joinRightAVL(AVLTree<T> left, T inBetweenValue, AVLTree<T> right) {
-        AVLTree<T> newTree;
-        if (height(left) > height(right) + 1) { // out of balance
-            AVLTree<T> leftRight = new AVLTree<>(left.comparator);
-            leftRight.root = left.root.right;
-            if (leftRight.root != null) leftRight.root.parent = null;
-            AVLTree<T> rightJoin = joinRightAVL(leftRight, inBetweenValue, right);
-            left.root.right = rightJoin.root;
-            rightJoin.root.parent = left.root;
-            left.nodesMap.putAll(rightJoin.nodesMap);
-            newTree = left;
-        } else {
-            newTree = newAVLTree(right.comparator, left, inBetweenValue, right);
+    /**
+     * Merges nodes of the tree with the new sorted nodes in ascending order. Fails before anything is changed if
+     * an index-free tree already has one of the values.
+     */
+    private List<InternalAVLNode<T>> merge(List<InternalAVLNode<T>> sortedNewNodes) {
+        List<InternalAVLNode<T>> mergedNodes = new ArrayList<>(size() + sortedNewNodes.size());
+        InternalAVLNode<T> existingNode = root != null ? getLeftmost(root) : null;
+        for (InternalAVLNode<T> newNode : sortedNewNodes) {
+            while (existingNode != null && compare(existingNode.value, newNode.value) <= 0) {
+                addMerged(mergedNodes, existingNode);
+                existingNode = (InternalAVLNode<T>) TreeUtils.successor(existingNode);
+            }
+            addMerged(mergedNodes, newNode);
         }
-        newTree.reBalance(newTree.root);
-        return newTree;
+        for (; existingNode != null; existingNode = (InternalAVLNode<T>) TreeUtils.successor(existingNode)) {
+            addMerged(mergedNodes, existingNode);
+        }
+        return mergedNodes;
     }
 
-    private static <T> AVLTree<T> newAVLTree(Comparator<? super T> comparator, AVLTree<T> left, T inBetweenValue, AVLTree<T> right) {
-        AVLTree<T> newTree = new AVLTree<>(comparator);
-        newTree.root = newNode(left.root, inBetweenValue, right.root);
-        newTree.nodesMap.put(inBetweenValue, newTree.root);
-        newTree.nodesMap.putAll(left.nodesMap);
-        newTree.nodesMap.putAll(right.nodesMap);
+    private void addMerged(List<InternalAVLNode<T>> mergedNodes, InternalAVLNode<T> node) {
+        if (!isIndexed() && !mergedNodes.isEmpty() && compare(mergedNodes.get(mergedNodes.size() - 1).value, node.value) == 0) {
+            if (multiset) { // copies go into the node merged before
+                ((CountedNode<T>) mergedNodes.get(mergedNodes.size() - 1)).count += node.count();
+                return;
+            }
+            throw new IllegalArgumentException("Tree already has value " + node.value + ". Addition of duplicated (equal) values is not allowed");
+        }
+        mergedNodes.add(node);
+    }
 
-        return newTree;
+    /**
+     * Adds the nodes to the index of an indexed tree. Fails and leaves the index as it was if any value is already there.
+     */
+    private void index(List<InternalAVLNode<T>> nodes) {
+        if (!isIndexed()) {
+            return;
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            InternalAVLNode<T> node = nodes.get(i);
+            if (nodesMap.putIfAbsent(node.value, node) != null) {
+                for (int j = 0; j < i; j++) {
+                    nodesMap.remove(nodes.get(j).value);
+                }
+                throw new IllegalArgumentException("Tree already has value " + node.value + ". Addition of duplicated (equal) values is not allowed");
+            }
+        }
     }
 
-    private static <T> int height(AVLTree<T> tree) {
-        return tree.root != null ? tree.root.height : -1;
+    /**
+     * Links the given number of nodes, taken in ascending order, into a perfectly balanced subtree: sizes of the subtrees
+     * of every node differ by one at most, so do their heights.
+     *
+     * @return root of the subtree, null if the size is 0
+     */
+    private static <T> InternalAVLNode<T> buildBalanced(Iterator<InternalAVLNode<T>> sortedNodes, int size) {
+        if (size == 0) {
+            return null;
+        }
+        int leftSize = size / 2;
+        InternalAVLNode<T> left = buildBalanced(sortedNodes, leftSize);
+        InternalAVLNode<T> node = sortedNodes.next();
+        node.parent = null;
+        node.setLeft(left);
+        node.setRight(buildBalanced(sortedNodes, size - leftSize - 1));
+        setHeight(node);
+        return node;
     }
 
-    private void insert(InternalAVLNode<T> subtree, InternalAVLNode<T> node) {
-        if (comparator.compare(subtree.getValue(), node.getValue()) < 0) {
-            if (subtree.getRight() == null) {
-                subtree.setRight(node);
-                reBalance(node);
-            } else {
-                insert(subtree.right, node);
+    private static <T> void forEachNode(InternalAVLNode<T> subtreeRoot, Consumer<InternalAVLNode<T>> action) {
+        if (subtreeRoot == null) {
+            return;
+        }
+        Deque<InternalAVLNode<T>> stack = new ArrayDeque<>();
+        stack.push(subtreeRoot);
+        while (!stack.isEmpty()) {
+            InternalAVLNode<T> node = stack.pop();
+            action.accept(node);
+            if (node.left != null) {
+                stack.push(node.left);
             }
-        } else {
-            if (subtree.getLeft() == null) {
-                subtree.setLeft(node);
-                reBalance(node);
+            if (node.right != null) {
+                stack.push(node.right);
+            }
+        }
+    }
+
+    /**
+     * @return the inserted node, or the node of a multiset that already has the value
+     */
+    private InternalAVLNode<T> insert(InternalAVLNode<T> node, InternalAVLNode<T> start) {
+        InternalAVLNode<T> parent = start;
+        while (true) {
+            visit();
+            int c = compare(node.getValue(), parent.getValue());
+            if (c == 0 && multiset) {
+                ((CountedNode<T>) parent).count += node.count();
+                setSizesToRoot(parent);
+                return parent;
+            }
+            if (c == 0 && !isIndexed()) {
+                throw new IllegalArgumentException("Tree already has value " + node.getValue() + ". Addition of duplicated (equal) values is not allowed");
+            }
+            if (c > 0) {
+                if (parent.right == null) {
+                    parent.setRight(node);
+                    break;
+                }
+                parent = parent.right;
             } else {
-                insert(subtree.left, node);
+                if (parent.left == null) {
+                    parent.setLeft(node);
+                    break;
+                }
+                parent = parent.left;
+            }
+        }
+        retrace(parent);
+        return node;
+    }
+
+    /**
+     * Walks up from the node restoring heights and balance. Balance of ancestors only depends on the height of their
+     * subtrees, so rebalancing stops as soon as a subtree ends up with the height it had before. After an insertion that
+     * happens at the latest after the first rotation. Sizes of the remaining ancestors are still updated on the way up.
+     */
+    private void retrace(InternalAVLNode<T> node) {
+        StatsRecorder stats = this.stats;
+        while (true) {
+            int previousHeight = node.height;
+            if (stats != null) {
+                stats.retraceSteps++;
+            }
+            node = reBalance(node, stats);
+            if (node.parent == null) {
+                root = node;
+                return;
+            }
+            if (node.height == previousHeight) {
+                break;
             }
+            node = node.parent;
         }
+        setSizesToRoot(node.parent);
+    }
+
+    /**
+     * Restores balance of the subtree given that subtrees of its children are balanced.
+     *
+     * @return new root of the subtree
+     */
+    private static <T> InternalAVLNode<T> reBalance(InternalAVLNode<T> subtreeRoot) {
+        return reBalance(subtreeRoot, null);
     }
 
-    private void reBalance(InternalAVLNode<T> subtreeRoot) {
-        setHeightAndBalance(subtreeRoot);
-        if (subtreeRoot.balanceFactor < -1) { // out of balance and left heavy
-            if (subtreeRoot.left.balanceFactor > 0) { // left child is right heavy
+    /**
+     * @param stats counts the rotations, null if the tree doesn't keep stats
+     */
+    private static <T> InternalAVLNode<T> reBalance(InternalAVLNode<T> subtreeRoot, StatsRecorder stats) {
+        setHeight(subtreeRoot);
+        if (subtreeRoot.balanceFactor() < -1) { // out of balance and left heavy
+            boolean isDouble = subtreeRoot.left.balanceFactor() > 0;
+            if (isDouble) { // left child is right heavy
                 rotateLeft(subtreeRoot.left);
             }
             subtreeRoot = rotateRight(subtreeRoot);
-        } else if (subtreeRoot.balanceFactor > 1) { // out of balance and right heavy
-            if (subtreeRoot.right.balanceFactor < 0) { // right child is left heavy
+            recordRotation(stats, isDouble);
+        } else if (subtreeRoot.balanceFactor() > 1) { // out of balance and right heavy
+            boolean isDouble = subtreeRoot.right.balanceFactor() < 0;
+            if (isDouble) { // right child is left heavy
                 rotateRight(subtreeRoot.right);
             }
             subtreeRoot = rotateLeft(subtreeRoot);
+            recordRotation(stats, isDouble);
+        }
+        return subtreeRoot;
+    }
+
+    private static void recordRotation(StatsRecorder stats, boolean isDouble) {
+        if (stats == null) {
+            return;
         }
-        if (subtreeRoot.getParent() != null) {
-            reBalance(subtreeRoot.parent);
+        if (isDouble) {
+            stats.doubleRotations++;
+        } else {
+            stats.singleRotations++;
         }
     }
 
     // means it becomes left child or its right child
-    private InternalAVLNode<T> rotateLeft(InternalAVLNode<T> node) {
+    private static <T> InternalAVLNode<T> rotateLeft(InternalAVLNode<T> node) {
         InternalAVLNode<T> rightChild = node.right;
         InternalAVLNode<T> parent = node.parent;
         InternalAVLNode<T> rightLeft = rightChild.left;
         rightChild.setLeft(node);
         node.setRight(rightLeft);
-        setHeightAndBalance(node);
-        setHeightAndBalance(rightChild);
+        setHeight(node);
+        setHeight(rightChild);
         if (parent != null) {
             boolean parentRight = node.equals(parent.getRight());
             if (parentRight) {
@@ -296,9 +1543,7 @@ public class AVLTree<T> {
             } else {
                 parent.setLeft(rightChild);
             }
-            setHeightAndBalance(parent);
         } else {
-            this.root = rightChild;
             rightChild.setParent(null);
         }
 
@@ -306,14 +1551,14 @@ public class AVLTree<T> {
     }
 
     // means it becomes right child of its left child
-    private InternalAVLNode<T> rotateRight(InternalAVLNode<T> node) {
+    private static <T> InternalAVLNode<T> rotateRight(InternalAVLNode<T> node) {
         InternalAVLNode<T> leftChild = node.left;
         InternalAVLNode<T> parent = node.parent;
         InternalAVLNode<T> leftRight = leftChild.right;
         leftChild.setRight(node);
         node.setLeft(leftRight);
-        setHeightAndBalance(node);
-        setHeightAndBalance(leftChild);
+        setHeight(node);
+        setHeight(leftChild);
         if (parent != null) {
             boolean parentLeft = node.equals(parent.getLeft());
             if (parentLeft) {
@@ -321,35 +1566,322 @@ public class AVLTree<T> {
             } else {
                 parent.setRight(leftChild);
             }
-            setHeightAndBalance(parent);
         } else {
-            this.root = leftChild;
             leftChild.setParent(null);
         }
         return leftChild;
     }
 
-    private static <T> void setHeightAndBalance(InternalAVLNode<T> subtreeRoot) {
+    // size of the subtree is kept along with its height
+    private static <T> void setHeight(InternalAVLNode<T> subtreeRoot) {
         int leftChildHeight = subtreeRoot.getLeft() != null ? subtreeRoot.left.height : -1;
         int rightChildHeight = subtreeRoot.getRight() != null ? subtreeRoot.right.height : -1;
         subtreeRoot.setHeight(max(leftChildHeight, rightChildHeight) + 1);
-        subtreeRoot.balanceFactor = rightChildHeight - leftChildHeight;
+        setSize(subtreeRoot);
+    }
+
+    // along with the size, subclasses of the node update whatever else they keep for the subtree
+    private static <T> void setSize(InternalAVLNode<T> subtreeRoot) {
+        subtreeRoot.size = size(subtreeRoot.left) + size(subtreeRoot.right) + subtreeRoot.count();
+        subtreeRoot.updateSubtree();
+    }
+
+    private static <T> void setSizesToRoot(InternalAVLNode<T> node) {
+        for (; node != null; node = node.parent) {
+            setSize(node);
+        }
+    }
+
+    private static <T> int size(InternalAVLNode<T> node) {
+        return node != null ? node.size : 0;
     }
 
     public void clear() {
-        nodesMap.clear();
+        if (isIndexed()) {
+            nodesMap.clear();
+        }
         root = null;
     }
 
-    private static class InternalAVLNode<T> implements AVLNode<T> {
-        private final T value;
+    /**
+     * Returns the value of a multiset node as many times as the node has copies of it.
+     */
+    private class NodeIterator implements Iterator<T> {
+        private final T from, to;
+        private final boolean descending;
+        private InternalAVLNode<T> next;
+        private int copiesOfNext;
+        private InternalAVLNode<T> lastReturned;
+
+        private NodeIterator(InternalAVLNode<T> first, T from, T to, boolean descending) {
+            this.from = from;
+            this.to = to;
+            this.descending = descending;
+            setNext(first);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            if (--copiesOfNext == 0) {
+                setNext((InternalAVLNode<T>) (descending ? TreeUtils.predecessor(next) : TreeUtils.successor(next)));
+            }
+            return lastReturned.value;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            // copies that are still to be returned are counted separately, so only the returned one goes
+            deleteCopy(lastReturned);
+            lastReturned = null;
+        }
+
+        private void setNext(InternalAVLNode<T> node) {
+            next = withinBounds(node) ? node : null;
+            copiesOfNext = next != null ? next.count() : 0;
+        }
+
+        // only the bound in the direction of iteration can be crossed
+        private boolean withinBounds(InternalAVLNode<T> node) {
+            if (node == null) {
+                return false;
+            }
+            if (descending) {
+                return from == null || compare(node.value, from) >= 0;
+            } else {
+                return to == null || compare(node.value, to) < 0;
+            }
+        }
+    }
+
+    /**
+     * Covers the head node followed by the whole subtree, the head being the predecessor of the leftmost node of the
+     * subtree. Once traversal starts, the spliterator walks from node to node by their links and no longer splits.
+     */
+    private static final class NodeSpliterator<T> implements Spliterator<T> {
+        private final Comparator<? super T> comparator;
+        private final int characteristics;
+        private InternalAVLNode<T> head;
+        private InternalAVLNode<T> subtree;
+        private InternalAVLNode<T> next, last;
+        private int copiesOfNext;
+        private long remaining;
+
+        private NodeSpliterator(InternalAVLNode<T> head, InternalAVLNode<T> subtree, Comparator<? super T> comparator, int characteristics) {
+            this.head = head;
+            this.subtree = subtree;
+            this.comparator = comparator;
+            this.characteristics = characteristics;
+            this.remaining = (head != null ? head.count() : 0) + size(subtree);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (next != null || subtree == null) {
+                return null;
+            }
+            if (head == null && subtree.left == null) { // nothing to hand off yet, the subtree root becomes the head
+                head = subtree;
+                subtree = subtree.right;
+                return trySplit();
+            }
+            NodeSpliterator<T> prefix = new NodeSpliterator<>(head, subtree.left, comparator, characteristics);
+            head = subtree;
+            subtree = subtree.right;
+            remaining -= prefix.remaining;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (next == null && !start()) {
+                return false;
+            }
+            T value = next.value;
+            advance();
+            action.accept(value);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (next == null && !start()) {
+                return;
+            }
+            while (next != null) {
+                T value = next.value;
+                advance();
+                action.accept(value);
+            }
+        }
+
+        private boolean start() {
+            if (remaining == 0) {
+                return false;
+            }
+            next = head != null ? head : getLeftmost(subtree);
+            last = subtree != null ? getRightmost(subtree) : head;
+            copiesOfNext = next.count();
+            head = null;
+            subtree = null;
+            return true;
+        }
+
+        private void advance() {
+            remaining--;
+            if (--copiesOfNext > 0) {
+                return;
+            }
+            if (next == last) {
+                next = null;
+            } else {
+                next = (InternalAVLNode<T>) TreeUtils.successor(next);
+                copiesOfNext = next.count();
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
+    }
+
+    private enum SetOperation {
+        UNION, INTERSECTION, DIFFERENCE
+    }
+
+    /**
+     * Combines two detached subtrees: the second one is split by the root of the first one, then the left and the right
+     * parts are combined recursively and joined back through the root if it belongs to the result. The recursive calls
+     * relink separate nodes, so for big subtrees one of them is forked.
+     * <p>
+     * For indexed trees the task reports the nodes the index has to follow, at most one per node of the smaller tree:
+     * nodes of the second tree dropped from a union, nodes of the first tree kept by an intersection and nodes of the
+     * first tree dropped by a difference.
+     */
+    @SuppressWarnings("serial") // tasks are never serialized, and neither are the nodes they hold
+    private static final class SetOperationTask<T> extends RecursiveTask<InternalAVLNode<T>> {
+        private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+        private final SetOperation operation;
+        private final Comparator<? super T> comparator;
+        private final InternalAVLNode<T> first, second;
+        private final Queue<InternalAVLNode<T>> reported;
+
+        private SetOperationTask(SetOperation operation, Comparator<? super T> comparator, InternalAVLNode<T> first, InternalAVLNode<T> second,
+                                 Queue<InternalAVLNode<T>> reported) {
+            this.operation = operation;
+            this.comparator = comparator;
+            this.first = first;
+            this.second = second;
+            this.reported = reported;
+        }
+
+        @Override
+        protected InternalAVLNode<T> compute() {
+            if (first == null) {
+                return operation == SetOperation.UNION ? second : null;
+            } else if (second == null) {
+                return operation == SetOperation.INTERSECTION ? null : first;
+            }
+
+            boolean parallel = first.size + second.size >= PARALLEL_THRESHOLD;
+            Split<T> split = split(second, first.value, comparator, true, null);
+            SetOperationTask<T> leftTask = new SetOperationTask<>(operation, comparator, detach(first.left), split.less, reported);
+            SetOperationTask<T> rightTask = new SetOperationTask<>(operation, comparator, detach(first.right), split.greater, reported);
+            first.left = null;
+            first.right = null;
+            InternalAVLNode<T> left, right;
+            if (parallel) {
+                leftTask.fork();
+                right = rightTask.compute();
+                left = leftTask.join();
+            } else {
+                left = leftTask.compute();
+                right = rightTask.compute();
+            }
+
+            boolean keepRoot;
+            if (split.equal != null && first instanceof CountedNode<T> counted) {
+                counted.count = switch (operation) {
+                    case UNION -> counted.count + split.equal.count();
+                    case INTERSECTION -> Math.min(counted.count, split.equal.count());
+                    case DIFFERENCE -> counted.count - split.equal.count();
+                };
+                keepRoot = counted.count > 0;
+            } else {
+                keepRoot = switch (operation) {
+                    case UNION -> true;
+                    case INTERSECTION -> split.equal != null;
+                    case DIFFERENCE -> split.equal == null;
+                };
+            }
+            if (reported != null) {
+                switch (operation) {
+                    case UNION -> {
+                        if (split.equal != null) {
+                            reported.add(split.equal);
+                        }
+                    }
+                    case INTERSECTION -> {
+                        if (keepRoot) {
+                            reported.add(first);
+                        }
+                    }
+                    case DIFFERENCE -> {
+                        if (!keepRoot) {
+                            reported.add(first);
+                        }
+                    }
+                }
+            }
+            return keepRoot ? AVLTree.join(left, first, right) : AVLTree.join(left, right);
+        }
+    }
+
+    private static final class Split<T> {
+        private InternalAVLNode<T> less, equal, greater;
+    }
+
+    static class InternalAVLNode<T> implements AVLNode<T> {
+        private T value; // only changes when a pooled node is reused
         private InternalAVLNode<T> parent;
         private InternalAVLNode<T> left, right;
-        private int height = 0;
-        private int balanceFactor = 0;
+        private byte height = 0; // trees that fit in an int are less than 64 levels high
+        private int size = 1;
+
+        InternalAVLNode(T value) {
+            this.value = requireNonNull(value);
+        }
 
-        private InternalAVLNode(T value) {
+        private void reset(T value) {
             this.value = requireNonNull(value);
+            parent = null;
+            left = null;
+            right = null;
+            height = 0;
+            size = 1;
         }
 
         @Override
@@ -373,7 +1905,15 @@ public class AVLTree<T> {
         }
 
         void setHeight(int height) {
-            this.height = height;
+            this.height = (byte) height;
+        }
+
+        /**
+         * @return height of the right subtree minus the height of the left one, which is all the balance the node needs
+         * to know, so it's not kept
+         */
+        int balanceFactor() {
+            return (right != null ? right.height : -1) - (left != null ? left.height : -1);
         }
 
         void setLeft(InternalAVLNode<T> leftChild) {
@@ -389,9 +1929,82 @@ public class AVLTree<T> {
         void setParent(InternalAVLNode<T> parent) {
             this.parent = parent;
         }
+
+        /**
+         * Called whenever the children of the node change, after the children themselves have been updated.
+         */
+        void updateSubtree() {
+        }
+
+        /**
+         * @return number of copies of the value the node holds
+         */
+        int count() {
+            return 1;
+        }
+    }
+
+    /**
+     * Node of a multiset, which holds all the copies of its value.
+     */
+    private static final class CountedNode<T> extends InternalAVLNode<T> {
+        private int count = 1;
+
+        private CountedNode(T value) {
+            super(value);
+        }
+
+        @Override
+        int count() {
+            return count;
+        }
     }
 
+    /**
+     * @return number of levels in the tree, 0 if the tree is empty
+     */
     public int getHeight() {
-        return (int) Math.ceil(log(nodesMap.size() + 1) / log(2));
+        return root != null ? root.height + 1 : 0;
+    }
+
+    /**
+     * Starts counting comparisons, visited nodes and rotations of the tree from zero, see {@link AVLTreeStats}. Every
+     * insertion and deletion is also reported as a JFR event, which costs next to nothing unless a recording has the
+     * event enabled. A tree that doesn't keep stats still reads the stats field and checks it for null on every
+     * comparison, visited node and rebalanced node, which is cheap but not free.
+     */
+    public void enableStats() {
+        stats = new StatsRecorder();
+    }
+
+    public void disableStats() {
+        stats = null;
+    }
+
+    public boolean isStatsEnabled() {
+        return stats != null;
+    }
+
+    /**
+     * @throws IllegalStateException if the stats are not enabled
+     */
+    public AVLTreeStats getStats() {
+        if (stats == null) {
+            throw new IllegalStateException("Stats are not enabled");
+        }
+        return stats.snapshot(size(), getHeight());
+    }
+
+    private int compare(T a, T b) {
+        if (stats != null) {
+            stats.comparisons++;
+        }
+        return comparator.compare(a, b);
+    }
+
+    private void visit() {
+        if (stats != null) {
+            stats.nodesVisited++;
+        }
     }
 }
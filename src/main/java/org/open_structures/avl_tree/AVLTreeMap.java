@@ -0,0 +1,390 @@
+package org.open_structures.avl_tree;
+
+import java.util.*;
+
+/**
+ * {@link NavigableMap} backed by an index-free {@link AVLTree} of keys, so the comparator alone defines which keys are
+ * equal, same as in {@link TreeMap}. The value is kept in the node of its key. Views returned by {@link #subMap},
+ * {@link #headMap}, {@link #tailMap} and {@link #descendingMap()} are live: they read and write the same tree and
+ * navigate it in O(log n), plus O(1) for each entry they iterate over.
+ * <p>
+ * Entries returned by navigation methods such as {@link #firstEntry()} are snapshots that don't support
+ * {@link Map.Entry#setValue(Object)}, while entries of {@link #entrySet()} write through to the map.
+ */
+public class AVLTreeMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    private final TreeRange<K> range;
+
+    public AVLTreeMap(Comparator<? super K> comparator) {
+        this(new TreeRange<>(AVLTree.indexFree(comparator)));
+    }
+
+    private AVLTreeMap(TreeRange<K> range) {
+        this.range = range;
+    }
+
+    @Override
+    public int size() {
+        return range.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return range.isEmpty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsKey(Object key) {
+        return range.find((K) key) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (Iterator<AVLNode<K>> iterator = range.nodeIterator(); iterator.hasNext(); ) {
+            if (Objects.equals(value, valueOf(iterator.next()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        AVLNode<K> node = range.find((K) key);
+        return node != null ? valueOf(node) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (!range.inRange(key)) {
+            throw new IllegalArgumentException(key + " is out of range");
+        }
+        MapNode<K, V> node = (MapNode<K, V>) range.tree().find(key);
+        if (node != null) {
+            V previousValue = node.mappedValue;
+            node.mappedValue = value;
+            return previousValue;
+        }
+        range.tree().insertNode(new MapNode<>(key, value));
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        AVLNode<K> node = range.find((K) key);
+        if (node == null) {
+            return null;
+        }
+        range.tree().delete(node);
+        return valueOf(node);
+    }
+
+    @Override
+    public void clear() {
+        range.clear();
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return snapshotOf(range.lower(key));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOf(range.lower(key));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return snapshotOf(range.floor(key));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOf(range.floor(key));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return snapshotOf(range.ceiling(key));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOf(range.ceiling(key));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return snapshotOf(range.higher(key));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOf(range.higher(key));
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return snapshotOf(range.first());
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return snapshotOf(range.last());
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        return poll(range.first());
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        return poll(range.last());
+    }
+
+    @Override
+    public K firstKey() {
+        return existingKeyOf(range.first());
+    }
+
+    @Override
+    public K lastKey() {
+        return existingKeyOf(range.last());
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new AVLTreeMap<>(range.descendingRange());
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new AVLTreeSet<>(range, false);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return new AVLTreeSet<>(range.descendingRange(), false);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                Iterator<AVLNode<K>> nodeIterator = range.nodeIterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return nodeIterator.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return valueOf(nodeIterator.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        nodeIterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return AVLTreeMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                AVLTreeMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Iterator<AVLNode<K>> nodeIterator = range.nodeIterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return nodeIterator.hasNext();
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Entry<K, V> next() {
+                        return new NodeEntry<>((MapNode<K, V>) nodeIterator.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        nodeIterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return AVLTreeMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Entry<?, ?> entry && findEntry(entry) != null;
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                AVLNode<K> node = o instanceof Entry<?, ?> entry ? findEntry(entry) : null;
+                if (node == null) {
+                    return false;
+                }
+                range.tree().delete(node);
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                AVLTreeMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (fromKey == null || toKey == null) {
+            throw new NullPointerException();
+        }
+        return new AVLTreeMap<>(range.subRange(fromKey, fromInclusive, toKey, toInclusive));
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return new AVLTreeMap<>(range.subRange(null, false, Objects.requireNonNull(toKey), inclusive));
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return new AVLTreeMap<>(range.subRange(Objects.requireNonNull(fromKey), inclusive, null, false));
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return range.comparator();
+    }
+
+    @SuppressWarnings("unchecked")
+    private AVLNode<K> findEntry(Entry<?, ?> entry) {
+        AVLNode<K> node = range.find((K) entry.getKey());
+        return node != null && Objects.equals(valueOf(node), entry.getValue()) ? node : null;
+    }
+
+    private Entry<K, V> poll(AVLNode<K> node) {
+        if (node == null) {
+            return null;
+        }
+        Entry<K, V> entry = snapshotOf(node);
+        range.tree().delete(node);
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> V valueOf(AVLNode<K> node) {
+        return ((MapNode<K, V>) node).mappedValue;
+    }
+
+    private static <K, V> Entry<K, V> snapshotOf(AVLNode<K> node) {
+        return node != null ? new SimpleImmutableEntry<>(node.getValue(), valueOf(node)) : null;
+    }
+
+    private static <K> K keyOf(AVLNode<K> node) {
+        return node != null ? node.getValue() : null;
+    }
+
+    private static <K> K existingKeyOf(AVLNode<K> node) {
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        return node.getValue();
+    }
+
+    private static final class MapNode<K, V> extends AVLTree.InternalAVLNode<K> {
+        private V mappedValue;
+
+        private MapNode(K key, V mappedValue) {
+            super(key);
+            this.mappedValue = mappedValue;
+        }
+    }
+
+    private static final class NodeEntry<K, V> implements Entry<K, V> {
+        private final MapNode<K, V> node;
+
+        private NodeEntry(MapNode<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public K getKey() {
+            return node.getValue();
+        }
+
+        @Override
+        public V getValue() {
+            return node.mappedValue;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V previousValue = node.mappedValue;
+            node.mappedValue = value;
+            return previousValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry<?, ?> entry && Objects.equals(getKey(), entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.open_structures.avl_tree;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a single insertion or deletion of a tree that has its stats enabled. It's only committed while a recording
+ * has the event enabled, with a threshold on the duration of the operation set as usual.
+ */
+@Name("org.open_structures.avl_tree.Operation")
+@Label("AVL Tree Operation")
+@Category("AVL Tree")
+@Description("Insertion or deletion of a tree that has its stats enabled")
+@StackTrace(false)
+class AVLTreeOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Comparisons")
+    long comparisons;
+
+    @Label("Nodes Visited")
+    long nodesVisited;
+
+    @Label("Retrace Steps")
+    long retraceSteps;
+
+    @Label("Rotations")
+    long rotations;
+
+    @Label("Tree Size")
+    int treeSize;
+}
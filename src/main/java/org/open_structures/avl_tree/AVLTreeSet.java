@@ -0,0 +1,202 @@
+package org.open_structures.avl_tree;
+
+import java.util.*;
+
+/**
+ * {@link NavigableSet} backed by an index-free {@link AVLTree}, so the comparator alone defines which elements are
+ * equal, same as in {@link TreeSet}. Views returned by {@link #subSet}, {@link #headSet}, {@link #tailSet} and
+ * {@link #descendingSet()} are live: they read and write the same tree and navigate it in O(log n), plus O(1) for each
+ * element they iterate over. Sizes of the views are counted by ranks in O(log n) as well.
+ */
+public class AVLTreeSet<T> extends AbstractSet<T> implements NavigableSet<T> {
+
+    private final TreeRange<T> range;
+    private final boolean additionAllowed;
+
+    public AVLTreeSet(Comparator<? super T> comparator) {
+        this(new TreeRange<>(AVLTree.indexFree(comparator)), true);
+    }
+
+    /**
+     * @param additionAllowed false for key sets of maps, whose nodes can only be inserted by the map itself
+     */
+    AVLTreeSet(TreeRange<T> range, boolean additionAllowed) {
+        this.range = range;
+        this.additionAllowed = additionAllowed;
+    }
+
+    @Override
+    public int size() {
+        return range.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return range.isEmpty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        return range.find((T) o) != null;
+    }
+
+    @Override
+    public boolean add(T value) {
+        if (!additionAllowed) {
+            throw new UnsupportedOperationException();
+        }
+        if (!range.inRange(value)) {
+            throw new IllegalArgumentException(value + " is out of range");
+        }
+        if (range.tree().contains(value)) {
+            return false;
+        }
+        range.tree().insert(value);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        AVLNode<T> node = range.find((T) o);
+        if (node == null) {
+            return false;
+        }
+        range.tree().delete(node);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        range.clear();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<AVLNode<T>> nodeIterator = range.nodeIterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return nodeIterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return nodeIterator.next().getValue();
+            }
+
+            @Override
+            public void remove() {
+                nodeIterator.remove();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public T lower(T value) {
+        return valueOf(range.lower(value));
+    }
+
+    @Override
+    public T floor(T value) {
+        return valueOf(range.floor(value));
+    }
+
+    @Override
+    public T ceiling(T value) {
+        return valueOf(range.ceiling(value));
+    }
+
+    @Override
+    public T higher(T value) {
+        return valueOf(range.higher(value));
+    }
+
+    @Override
+    public T pollFirst() {
+        return poll(range.first());
+    }
+
+    @Override
+    public T pollLast() {
+        return poll(range.last());
+    }
+
+    @Override
+    public T first() {
+        return existingValueOf(range.first());
+    }
+
+    @Override
+    public T last() {
+        return existingValueOf(range.last());
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return new AVLTreeSet<>(range.descendingRange(), additionAllowed);
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        if (fromElement == null || toElement == null) {
+            throw new NullPointerException();
+        }
+        return new AVLTreeSet<>(range.subRange(fromElement, fromInclusive, toElement, toInclusive), additionAllowed);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        return new AVLTreeSet<>(range.subRange(null, false, Objects.requireNonNull(toElement), inclusive), additionAllowed);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        return new AVLTreeSet<>(range.subRange(Objects.requireNonNull(fromElement), inclusive, null, false), additionAllowed);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return range.comparator();
+    }
+
+    private T poll(AVLNode<T> node) {
+        if (node == null) {
+            return null;
+        }
+        range.tree().delete(node);
+        return node.getValue();
+    }
+
+    private static <T> T valueOf(AVLNode<T> node) {
+        return node != null ? node.getValue() : null;
+    }
+
+    private static <T> T existingValueOf(AVLNode<T> node) {
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        return node.getValue();
+    }
+}
@@ -0,0 +1,97 @@
+package org.open_structures.avl_tree;
+
+/**
+ * Snapshot of the counters of an {@link AVLTree}, see {@link AVLTree#enableStats()}. Counters cover the time since
+ * the stats were enabled.
+ */
+public final class AVLTreeStats {
+
+    private final long insertions;
+    private final long deletions;
+    private final long comparisons;
+    private final long nodesVisited;
+    private final long retraceSteps;
+    private final long maxRetraceSteps;
+    private final long singleRotations;
+    private final long doubleRotations;
+    private final int size;
+    private final int height;
+
+    AVLTreeStats(long insertions, long deletions, long comparisons, long nodesVisited, long retraceSteps, long maxRetraceSteps,
+                 long singleRotations, long doubleRotations, int size, int height) {
+        this.insertions = insertions;
+        this.deletions = deletions;
+        this.comparisons = comparisons;
+        this.nodesVisited = nodesVisited;
+        this.retraceSteps = retraceSteps;
+        this.maxRetraceSteps = maxRetraceSteps;
+        this.singleRotations = singleRotations;
+        this.doubleRotations = doubleRotations;
+        this.size = size;
+        this.height = height;
+    }
+
+    public long getInsertions() {
+        return insertions;
+    }
+
+    public long getDeletions() {
+        return deletions;
+    }
+
+    /**
+     * @return calls of the comparator made by the tree: searches, inserts, deletes, splits, range bounds, joins and bulk
+     * inserts, including their sorting. Set operations are not counted, as they may compare in several threads at once
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * @return nodes that searches and splits went through on their way down from the root
+     */
+    public long getNodesVisited() {
+        return nodesVisited;
+    }
+
+    /**
+     * @return nodes rebalanced on the way back up after insertions and deletions
+     */
+    public long getRetraceSteps() {
+        return retraceSteps;
+    }
+
+    /**
+     * @return the longest way back up after a single insertion or deletion
+     */
+    public long getMaxRetraceSteps() {
+        return maxRetraceSteps;
+    }
+
+    public long getSingleRotations() {
+        return singleRotations;
+    }
+
+    public long getDoubleRotations() {
+        return doubleRotations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of levels in the tree when the snapshot was taken
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return "AVLTreeStats{insertions=" + insertions + ", deletions=" + deletions + ", comparisons=" + comparisons +
+                ", nodesVisited=" + nodesVisited + ", retraceSteps=" + retraceSteps + ", maxRetraceSteps=" + maxRetraceSteps +
+                ", singleRotations=" + singleRotations + ", doubleRotations=" + doubleRotations + ", size=" + size +
+                ", height=" + height + '}';
+    }
+}
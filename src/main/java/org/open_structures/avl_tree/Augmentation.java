@@ -0,0 +1,74 @@
+package org.open_structures.avl_tree;
+
+import java.util.Comparator;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Aggregate that {@link AugmentedAVLTree} keeps for every subtree, such as a sum, a minimum or a maximum of something
+ * derived from the values. Every value is lifted into an aggregate, and aggregates of neighbouring ranges of values are
+ * combined into the aggregate of their union.
+ * <p>
+ * Combining has to be associative, and combining with the identity has to leave an aggregate as it is. Aggregates are
+ * combined in ascending order of the values, so combining doesn't have to be commutative.
+ *
+ * @param <T> type of the values
+ * @param <A> type of the aggregate
+ */
+public interface Augmentation<T, A> {
+
+    /**
+     * @return aggregate of no values
+     */
+    A identity();
+
+    /**
+     * @return aggregate of the single value
+     */
+    A lift(T value);
+
+    /**
+     * @return aggregate of the values of the left range followed by the values of the right one
+     */
+    A combine(A left, A right);
+
+    static <T, A> Augmentation<T, A> of(A identity, Function<? super T, ? extends A> lift, BinaryOperator<A> combine) {
+        requireNonNull(lift);
+        requireNonNull(combine);
+        return new Augmentation<>() {
+            @Override
+            public A identity() {
+                return identity;
+            }
+
+            @Override
+            public A lift(T value) {
+                return lift.apply(value);
+            }
+
+            @Override
+            public A combine(A left, A right) {
+                return combine.apply(left, right);
+            }
+        };
+    }
+
+    /**
+     * @return sum of a {@code long} field of the values
+     */
+    static <T> Augmentation<T, Long> summingLong(ToLongFunction<? super T> field) {
+        requireNonNull(field);
+        return of(0L, field::applyAsLong, Long::sum);
+    }
+
+    /**
+     * @return maximum of a field of the values by the comparator, null for no values
+     */
+    static <T, A> Augmentation<T, A> maximum(Function<? super T, ? extends A> field, Comparator<? super A> comparator) {
+        requireNonNull(comparator);
+        return of(null, field, (left, right) -> left == null ? right : right == null || comparator.compare(left, right) >= 0 ? left : right);
+    }
+}
@@ -0,0 +1,178 @@
+package org.open_structures.avl_tree;
+
+import java.util.Comparator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * AVL tree that keeps an {@link Augmentation} of every subtree in its root node. Aggregates are updated along with the
+ * sizes of subtrees, on insertion, deletion, rotations, joins and splits, so they cost O(1) per updated node and any
+ * range of values is aggregated in O(log n).
+ */
+public class AugmentedAVLTree<T, A> extends AVLTree<T> {
+
+    private final Augmentation<? super T, A> augmentation;
+
+    /**
+     * Creates an indexed tree, same as {@link AVLTree#AVLTree(Comparator)}.
+     */
+    public AugmentedAVLTree(Comparator<? super T> comparator, Augmentation<? super T, A> augmentation) {
+        this(comparator, augmentation, true);
+    }
+
+    private AugmentedAVLTree(Comparator<? super T> comparator, Augmentation<? super T, A> augmentation, boolean indexed) {
+        super(comparator, indexed);
+        this.augmentation = requireNonNull(augmentation);
+    }
+
+    /**
+     * Creates an index-free tree, same as {@link AVLTree#indexFree(Comparator)}.
+     */
+    public static <T, A> AugmentedAVLTree<T, A> indexFree(Comparator<? super T> comparator, Augmentation<? super T, A> augmentation) {
+        return new AugmentedAVLTree<>(comparator, augmentation, false);
+    }
+
+    /**
+     * Same as {@link AVLTree#join(AVLTree, AVLTree)}. Trees can only be joined if they share the augmentation.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, A> AugmentedAVLTree<T, A> join(AugmentedAVLTree<T, A> left, AugmentedAVLTree<T, A> right) {
+        return (AugmentedAVLTree<T, A>) AVLTree.join(left, right);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public AugmentedAVLTree<T, A> split(T key) {
+        return (AugmentedAVLTree<T, A>) super.split(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public AugmentedAVLTree<T, A> extractRange(T from, T to) {
+        return (AugmentedAVLTree<T, A>) super.extractRange(from, to);
+    }
+
+    public Augmentation<? super T, A> getAugmentation() {
+        return augmentation;
+    }
+
+    /**
+     * @return aggregate of all the values in O(1)
+     */
+    public A aggregate() {
+        return aggregate(getRoot());
+    }
+
+    /**
+     * Aggregates the values that are greater than or equal to {@code from} and less than {@code to}, same range as
+     * {@link #iterator(Object, Object)} goes over. Null bound means there is no bound on that side. Only the nodes on the
+     * search paths of the bounds are visited, so it takes O(log n).
+     *
+     * @return aggregate of the values in the range, the identity if there are none
+     */
+    public A aggregate(T from, T to) {
+        Comparator<? super T> comparator = getComparator();
+        AVLNode<T> node = getRoot();
+        // descending to the first node within the range, where the search paths of the bounds part
+        while (node != null) {
+            if (from != null && comparator.compare(node.getValue(), from) < 0) {
+                node = node.getRight();
+            } else if (to != null && comparator.compare(node.getValue(), to) >= 0) {
+                node = node.getLeft();
+            } else {
+                A notLess = from != null ? aggregateNotLess(node.getLeft(), from) : aggregate(node.getLeft());
+                A less = to != null ? aggregateLess(node.getRight(), to) : aggregate(node.getRight());
+                return augmentation.combine(augmentation.combine(notLess, lifted(node)), less);
+            }
+        }
+        return augmentation.identity();
+    }
+
+    // aggregate of the values of the subtree that are greater than or equal to the bound
+    private A aggregateNotLess(AVLNode<T> node, T from) {
+        A aggregate = augmentation.identity();
+        while (node != null) {
+            if (getComparator().compare(node.getValue(), from) >= 0) {
+                aggregate = augmentation.combine(augmentation.combine(lifted(node), aggregate(node.getRight())), aggregate);
+                node = node.getLeft();
+            } else {
+                node = node.getRight();
+            }
+        }
+        return aggregate;
+    }
+
+    // aggregate of the values of the subtree that are less than the bound
+    private A aggregateLess(AVLNode<T> node, T to) {
+        A aggregate = augmentation.identity();
+        while (node != null) {
+            if (getComparator().compare(node.getValue(), to) < 0) {
+                aggregate = augmentation.combine(aggregate, augmentation.combine(aggregate(node.getLeft()), lifted(node)));
+                node = node.getRight();
+            } else {
+                node = node.getLeft();
+            }
+        }
+        return aggregate;
+    }
+
+    /**
+     * @return aggregate of the subtree of the node, the identity if the node is null
+     */
+    @SuppressWarnings("unchecked")
+    A aggregate(AVLNode<T> node) {
+        return node != null ? ((AugmentedNode<T, A>) node).aggregate : augmentation.identity();
+    }
+
+    @SuppressWarnings("unchecked")
+    private A lifted(AVLNode<T> node) {
+        return ((AugmentedNode<T, A>) node).lifted;
+    }
+
+    @Override
+    InternalAVLNode<T> newNode(T value) {
+        return new AugmentedNode<>(value, augmentation);
+    }
+
+    @Override
+    AVLTree<T> newEmptyTree() {
+        return new AugmentedAVLTree<>(getComparator(), augmentation, isIndexed());
+    }
+
+    @Override
+    boolean hasNodesCompatibleWith(AVLTree<T> other) {
+        return super.hasNodesCompatibleWith(other) && augmentation.equals(((AugmentedAVLTree<T, ?>) other).augmentation);
+    }
+
+    /**
+     * Keeps the aggregate of its subtree, and the aggregate of its own value so that it isn't lifted again on every
+     * update.
+     */
+    private static final class AugmentedNode<T, A> extends InternalAVLNode<T> {
+        private final Augmentation<? super T, A> augmentation;
+        private final A lifted;
+        private A aggregate;
+
+        private AugmentedNode(T value, Augmentation<? super T, A> augmentation) {
+            super(value);
+            this.augmentation = augmentation;
+            this.lifted = augmentation.lift(value);
+            this.aggregate = lifted;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void updateSubtree() {
+            AugmentedNode<T, A> left = (AugmentedNode<T, A>) getLeft();
+            AugmentedNode<T, A> right = (AugmentedNode<T, A>) getRight();
+            A aggregate = lifted;
+            if (left != null) {
+                aggregate = augmentation.combine(left.aggregate, aggregate);
+            }
+            if (right != null) {
+                aggregate = augmentation.combine(aggregate, right.aggregate);
+            }
+            this.aggregate = aggregate;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package org.open_structures.avl_tree;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static java.lang.Math.max;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * AVL tree with the smallest nodes: a node only has its value, two children and a height of one byte, so it takes 32
+ * bytes with compressed references instead of 40 taken by the nodes of {@link AVLTree}. Without parent links, insertion
+ * and deletion remember the path they descend along in an array of the greatest possible height and retrace it back up.
+ * <p>
+ * Nodes never leave the tree, so the tree only deals in values. Elements are compared by the comparator alone, same as
+ * in an index-free {@link AVLTree}.
+ */
+public class CompactAVLTree<T> implements Iterable<T> {
+
+    // an AVL tree of h levels has at least F(h + 2) - 1 nodes, and F(47) - 1 is over Integer.MAX_VALUE, so a path from
+    // the root of a tree of int size has 44 nodes at most, the same as the 43 of AVLTree.MAX_HEIGHT counted from 0
+    private static final int MAX_LEVELS = 44;
+
+    private final Comparator<? super T> comparator;
+    private final Node<T>[] path = newPath();
+    private Node<T> root;
+    private int size;
+
+    public CompactAVLTree(Comparator<? super T> comparator) {
+        this.comparator = requireNonNull(comparator);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the tree already has an equal value
+     */
+    public void insert(T value) {
+        checkValue(value);
+
+        if (root == null) {
+            root = new Node<>(value);
+            size++;
+            return;
+        }
+        int depth = 0;
+        Node<T> node = root;
+        while (true) {
+            path[depth++] = node;
+            int order = comparator.compare(value, node.value);
+            if (order == 0) {
+                clearPath(depth);
+                throw new IllegalArgumentException("Tree already has value " + value + ". Addition of duplicated (equal) values is not allowed");
+            }
+            Node<T> child = order < 0 ? node.left : node.right;
+            if (child == null) {
+                if (order < 0) {
+                    node.left = new Node<>(value);
+                } else {
+                    node.right = new Node<>(value);
+                }
+                break;
+            }
+            node = child;
+        }
+        size++;
+        retrace(depth);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the tree doesn't have the value
+     */
+    public void delete(T value) {
+        checkValue(value);
+
+        int depth = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int order = comparator.compare(value, node.value);
+            if (order == 0) {
+                break;
+            }
+            path[depth++] = node;
+            node = order < 0 ? node.left : node.right;
+        }
+        if (node == null) {
+            clearPath(depth);
+            throw new IllegalArgumentException(value + " does not belong to this tree");
+        }
+
+        if (node.left != null && node.right != null) {
+            // nodes are never handed out, so the successor can give its value to the node and be unlinked instead
+            path[depth++] = node;
+            Node<T> successor = node.right;
+            while (successor.left != null) {
+                path[depth++] = successor;
+                successor = successor.left;
+            }
+            node.value = successor.value;
+            replaceChild(path[depth - 1], successor, successor.right);
+        } else {
+            Node<T> child = node.left != null ? node.left : node.right;
+            if (depth == 0) {
+                root = child;
+            } else {
+                replaceChild(path[depth - 1], node, child);
+            }
+        }
+        size--;
+        retrace(depth);
+    }
+
+    public boolean contains(T value) {
+        checkValue(value);
+
+        Node<T> node = root;
+        while (node != null) {
+            int order = comparator.compare(value, node.value);
+            if (order == 0) {
+                return true;
+            }
+            node = order < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T first() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<T> node = root;
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.value;
+    }
+
+    /**
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T last() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<T> node = root;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * @return number of levels in the tree, 0 if the tree is empty
+     */
+    public int getHeight() {
+        return height(root) + 1;
+    }
+
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Iterates over the elements in ascending order, keeping the path from the root in an array of the height of the
+     * tree. The tree must not be modified while the iterator is in use.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private final Node<T>[] stack = newPath();
+            private int depth;
+
+            {
+                pushLeftSpine(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return depth > 0;
+            }
+
+            @Override
+            public T next() {
+                if (depth == 0) {
+                    throw new NoSuchElementException();
+                }
+                Node<T> node = stack[--depth];
+                stack[depth] = null;
+                pushLeftSpine(node.right);
+                return node.value;
+            }
+
+            private void pushLeftSpine(Node<T> node) {
+                for (; node != null; node = node.left) {
+                    stack[depth++] = node;
+                }
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (T value : this) {
+            builder.append(builder.length() > 1 ? ", " : "").append(value);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Walks the path back up from the given depth restoring heights and balance, and stops as soon as a subtree ends up
+     * with the height it had before, same as {@link AVLTree} does by the parent links.
+     */
+    private void retrace(int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<T> node = path[i];
+            int previousHeight = node.height;
+            Node<T> subtreeRoot = reBalance(node);
+            if (i == 0) {
+                root = subtreeRoot;
+            } else if (subtreeRoot != node) {
+                replaceChild(path[i - 1], node, subtreeRoot);
+            }
+            if (subtreeRoot.height == previousHeight) {
+                break;
+            }
+        }
+        clearPath(depth);
+    }
+
+    // the path shouldn't keep deleted nodes from being collected
+    private void clearPath(int depth) {
+        Arrays.fill(path, 0, depth, null);
+    }
+
+    private static <T> void replaceChild(Node<T> parent, Node<T> child, Node<T> newChild) {
+        if (parent.left == child) {
+            parent.left = newChild;
+        } else {
+            parent.right = newChild;
+        }
+    }
+
+    /**
+     * Restores balance of the subtree given that subtrees of its children are balanced.
+     *
+     * @return new root of the subtree
+     */
+    private static <T> Node<T> reBalance(Node<T> subtreeRoot) {
+        setHeight(subtreeRoot);
+        int balanceFactor = balanceFactor(subtreeRoot);
+        if (balanceFactor < -1) { // out of balance and left heavy
+            if (balanceFactor(subtreeRoot.left) > 0) { // left child is right heavy
+                subtreeRoot.left = rotateLeft(subtreeRoot.left);
+            }
+            subtreeRoot = rotateRight(subtreeRoot);
+        } else if (balanceFactor > 1) { // out of balance and right heavy
+            if (balanceFactor(subtreeRoot.right) < 0) { // right child is left heavy
+                subtreeRoot.right = rotateRight(subtreeRoot.right);
+            }
+            subtreeRoot = rotateLeft(subtreeRoot);
+        }
+        return subtreeRoot;
+    }
+
+    private static <T> Node<T> rotateLeft(Node<T> node) {
+        Node<T> rightChild = node.right;
+        node.right = rightChild.left;
+        rightChild.left = node;
+        setHeight(node);
+        setHeight(rightChild);
+        return rightChild;
+    }
+
+    private static <T> Node<T> rotateRight(Node<T> node) {
+        Node<T> leftChild = node.left;
+        node.left = leftChild.right;
+        leftChild.right = node;
+        setHeight(node);
+        setHeight(leftChild);
+        return leftChild;
+    }
+
+    private static <T> void setHeight(Node<T> node) {
+        node.height = (byte) (max(height(node.left), height(node.right)) + 1);
+    }
+
+    private static <T> int balanceFactor(Node<T> node) {
+        return height(node.right) - height(node.left);
+    }
+
+    private static <T> int height(Node<T> node) {
+        return node != null ? node.height : -1;
+    }
+
+    private static <T> T checkValue(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null is not allowed");
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newPath() {
+        return (Node<T>[]) new Node<?>[MAX_LEVELS];
+    }
+
+    private static final class Node<T> {
+        private T value; // a deleted value is replaced by its successor
+        private Node<T> left, right;
+        private byte height;
+
+        private Node(T value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,741 @@
+package org.open_structures.avl_tree;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * AVL tree of distinct values that can be used by many threads at once, following "A Practical Concurrent Binary
+ * Search Tree" by Bronson, Casper, Chafi and Olukotun.
+ * <ul>
+ * <li>Lookups take no locks. A reader walks down from the root and validates every step against the version of the
+ * node it came from. Rotations change the version of the nodes that move down, so a reader that may have been misled
+ * by a rotation steps back and retries. If a rotation is in progress, the reader spins until it's over.</li>
+ * <li>Writers lock only the nodes they change: the parent of a new leaf, or the node that gets unlinked and its parent.
+ * Rotations lock the nodes they rotate.</li>
+ * <li>A deleted value whose node has two children stays in the tree as a routing node, marked absent, and gets unlinked
+ * once it has one child or none. Balancing is relaxed: a writer fixes heights and rotates on its way back up, so
+ * the tree is balanced once writers are done, and stays close to balanced while they work.</li>
+ * </ul>
+ * Values are compared by the comparator alone, same as in an index-free {@link AVLTree}. The comparator is called from
+ * many threads, so it has to be thread safe.
+ */
+public class ConcurrentAVLTree<T> {
+    // results of the attempts, which retry from the parent node if the one they were at has changed
+    private static final int RETRY = -1;
+    private static final int UNCHANGED = 0;
+    private static final int CHANGED = 1;
+
+    // conditions of a node, positive conditions are the heights the node should have
+    private static final int UNLINK_REQUIRED = -1;
+    private static final int REBALANCE_REQUIRED = -2;
+    private static final int NOTHING_REQUIRED = -3;
+
+    // versions: the lowest bit marks an unlinked node, the next one a rotation in progress, the rest count rotations
+    private static final long UNLINKED = 1;
+    private static final long SHRINKING = 2;
+
+    private static final int SPIN_COUNT = 100;
+
+    private final Comparator<? super T> comparator;
+    // holds the root as its right child, so the root is changed under a lock same as any other child
+    private final Node<T> rootHolder = new Node<>(null, 0, false, null);
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentAVLTree(Comparator<? super T> comparator) {
+        this.comparator = requireNonNull(comparator);
+    }
+
+    /**
+     * Never blocks on a lock.
+     */
+    public boolean contains(T value) {
+        checkValue(value);
+        while (true) {
+            int result = attemptContains(value, rootHolder, 1, 0L);
+            if (result != RETRY) {
+                return result == CHANGED;
+            }
+        }
+    }
+
+    /**
+     * @return false if the tree already has an equal value
+     */
+    public boolean insert(T value) {
+        return update(checkValue(value), true);
+    }
+
+    /**
+     * @return false if the tree doesn't have the value
+     */
+    public boolean delete(T value) {
+        return update(checkValue(value), false);
+    }
+
+    /**
+     * @return number of values, which may miss changes that are in progress
+     */
+    public int size() {
+        return size.intValue();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * @return {@link #CHANGED} if the value is present, {@link #UNCHANGED} if it isn't
+     */
+    private int attemptContains(T value, Node<T> node, int dirToChild, long nodeVersion) {
+        while (true) {
+            Node<T> child = node.child(dirToChild);
+            if (child == null) {
+                if (node.version != nodeVersion) {
+                    return RETRY;
+                }
+                return UNCHANGED;
+            }
+            int order = comparator.compare(value, child.value);
+            if (order == 0) {
+                return child.present ? CHANGED : UNCHANGED;
+            }
+            long childVersion = child.version;
+            if (isShrinking(childVersion)) {
+                child.waitUntilShrinkCompleted(childVersion);
+            } else if (childVersion != UNLINKED && child == node.child(dirToChild)) {
+                if (node.version != nodeVersion) {
+                    return RETRY;
+                }
+                int result = attemptContains(value, child, order, childVersion);
+                if (result != RETRY) {
+                    return result;
+                }
+            }
+            // otherwise the child has changed, read it again unless the node has changed too
+            if (node.version != nodeVersion) {
+                return RETRY;
+            }
+        }
+    }
+
+    private boolean update(T value, boolean insert) {
+        while (true) {
+            Node<T> root = rootHolder.right;
+            if (root == null) {
+                if (!insert || attemptInsertIntoEmpty(value)) {
+                    return insert;
+                }
+            } else {
+                long rootVersion = root.version;
+                if (isShrinkingOrUnlinked(rootVersion)) {
+                    root.waitUntilShrinkCompleted(rootVersion);
+                } else if (root == rootHolder.right) {
+                    int result = attemptUpdate(value, insert, rootHolder, root, rootVersion);
+                    if (result != RETRY) {
+                        return result == CHANGED;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean attemptInsertIntoEmpty(T value) {
+        synchronized (rootHolder) {
+            if (rootHolder.right != null) {
+                return false;
+            }
+            rootHolder.right = new Node<>(value, 1, true, rootHolder);
+            rootHolder.height = 2;
+        }
+        size.increment();
+        return true;
+    }
+
+    /**
+     * Looks for the value below the node. Every step down is validated against the version the node had when the step
+     * towards it was taken, so that a rotation of the node, which changes the range of its subtrees, is noticed.
+     */
+    private int attemptUpdate(T value, boolean insert, Node<T> parent, Node<T> node, long nodeVersion) {
+        int order = comparator.compare(value, node.value);
+        if (order == 0) {
+            return attemptNodeUpdate(insert, parent, node);
+        }
+
+        while (true) {
+            Node<T> child = node.child(order);
+            if (hasShrunkOrUnlinked(nodeVersion, node.version)) {
+                return RETRY;
+            }
+
+            if (child == null) {
+                if (!insert) {
+                    return UNCHANGED;
+                }
+                Node<T> damaged;
+                synchronized (node) {
+                    // with the lock taken, the node can't be rotated any more, so it's enough to validate it once
+                    if (hasShrunkOrUnlinked(nodeVersion, node.version)) {
+                        return RETRY;
+                    }
+                    if (node.child(order) != null) { // lost the race to another insertion, retry from this node
+                        damaged = null;
+                    } else {
+                        node.setChild(order, new Node<>(value, 1, true, node));
+                        damaged = fixHeight(node);
+                        child = node.child(order);
+                    }
+                }
+                if (child != null) {
+                    size.increment();
+                    fixHeightAndRebalance(damaged);
+                    return CHANGED;
+                }
+            } else {
+                long childVersion = child.version;
+                if (isShrinkingOrUnlinked(childVersion)) {
+                    child.waitUntilShrinkCompleted(childVersion);
+                } else if (child == node.child(order)) {
+                    // the step to the child is valid if the step to the node still is
+                    if (hasShrunkOrUnlinked(nodeVersion, node.version)) {
+                        return RETRY;
+                    }
+                    int result = attemptUpdate(value, insert, node, child, childVersion);
+                    if (result != RETRY) {
+                        return result;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The parent is only needed to unlink the node, so it may be out of date for other updates.
+     */
+    private int attemptNodeUpdate(boolean insert, Node<T> parent, Node<T> node) {
+        if (!insert && !node.present) {
+            return UNCHANGED;
+        }
+
+        if (!insert && (node.left == null || node.right == null)) { // the node can be unlinked
+            Node<T> damaged;
+            synchronized (parent) {
+                if (isUnlinked(parent.version) || node.parent != parent) {
+                    return RETRY;
+                }
+                synchronized (node) {
+                    if (!node.present) {
+                        return UNCHANGED;
+                    }
+                    if (!attemptUnlink(parent, node)) {
+                        return RETRY;
+                    }
+                }
+                damaged = fixHeight(parent);
+            }
+            size.decrement();
+            fixHeightAndRebalance(damaged);
+            return CHANGED;
+        }
+
+        synchronized (node) {
+            if (isUnlinked(node.version)) {
+                return RETRY;
+            }
+            if (node.present == insert) {
+                return UNCHANGED;
+            }
+            if (!insert && (node.left == null || node.right == null)) { // the node can be unlinked by now
+                return RETRY;
+            }
+            node.present = insert;
+        }
+        if (insert) {
+            size.increment();
+        } else {
+            size.decrement();
+        }
+        return CHANGED;
+    }
+
+    /**
+     * Replaces the node with its only child, both the node and its parent have to be locked. Heights aren't fixed.
+     *
+     * @return false if the node isn't the child of the parent any more or has two children by now
+     */
+    private boolean attemptUnlink(Node<T> parent, Node<T> node) {
+        Node<T> parentLeft = parent.left;
+        if (parentLeft != node && parent.right != node) {
+            return false;
+        }
+        Node<T> left = node.left;
+        Node<T> right = node.right;
+        if (left != null && right != null) {
+            return false;
+        }
+        Node<T> splice = left != null ? left : right;
+        if (parentLeft == node) {
+            parent.left = splice;
+        } else {
+            parent.right = splice;
+        }
+        if (splice != null) {
+            splice.parent = parent;
+        }
+        node.version = UNLINKED;
+        node.present = false;
+        return true;
+    }
+
+    /**
+     * Reads the node without locking it. If the read is inconsistent, the thread that is changing the node will repair
+     * it, so a conclusion that nothing is required is still right.
+     */
+    private int nodeCondition(Node<T> node) {
+        Node<T> left = node.left;
+        Node<T> right = node.right;
+        if ((left == null || right == null) && !node.present) {
+            return UNLINK_REQUIRED;
+        }
+        int height = node.height;
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        int balanceFactor = leftHeight - rightHeight;
+        if (balanceFactor < -1 || balanceFactor > 1) {
+            return REBALANCE_REQUIRED;
+        }
+        int newHeight = Math.max(leftHeight, rightHeight) + 1;
+        return height != newHeight ? newHeight : NOTHING_REQUIRED;
+    }
+
+    /**
+     * Repairs damaged nodes going up the tree, until a node needs no repair. A rotation or an unlink returns the deepest
+     * node it damaged, and once that one is repaired, heights above the rotated nodes may still be out of date while
+     * the ones in between are right. So after that the nodes are checked from the rotated ones all the way up.
+     */
+    private void fixHeightAndRebalance(Node<T> node) {
+        Node<T> rotatedParent = null;
+        boolean toRoot = false;
+        while (true) {
+            int condition = node == null || node.parent == null || isUnlinked(node.version) ? NOTHING_REQUIRED : nodeCondition(node);
+            if (condition == NOTHING_REQUIRED) {
+                if (rotatedParent != null) {
+                    node = rotatedParent;
+                    rotatedParent = null;
+                    toRoot = true;
+                } else if (toRoot && node != null && node.parent != null && !isUnlinked(node.version)) {
+                    node = node.parent;
+                } else {
+                    return;
+                }
+            } else if (condition != UNLINK_REQUIRED && condition != REBALANCE_REQUIRED) {
+                synchronized (node) {
+                    node = fixHeight(node);
+                }
+            } else {
+                Node<T> parent = node.parent;
+                synchronized (parent) {
+                    if (!isUnlinked(parent.version) && node.parent == parent) {
+                        rotatedParent = parent;
+                        synchronized (node) {
+                            node = reBalance(parent, node);
+                        }
+                    }
+                    // otherwise the node has moved, try again
+                }
+            }
+        }
+    }
+
+    /**
+     * Fixes the height of the locked node, if that's all it needs.
+     *
+     * @return the lowest damaged node this thread is responsible for, null if there is none
+     */
+    private Node<T> fixHeight(Node<T> node) {
+        int condition = nodeCondition(node);
+        switch (condition) {
+            case REBALANCE_REQUIRED:
+            case UNLINK_REQUIRED:
+                return node;
+            case NOTHING_REQUIRED:
+                return null;
+            default:
+                node.height = condition;
+                return node.parent;
+        }
+    }
+
+    /**
+     * Unlinks or rotates the node, both the node and its parent have to be locked.
+     *
+     * @return the lowest damaged node, null if there is none
+     */
+    private Node<T> reBalance(Node<T> parent, Node<T> node) {
+        Node<T> left = node.left;
+        Node<T> right = node.right;
+        if ((left == null || right == null) && !node.present) {
+            return attemptUnlink(parent, node) ? fixHeight(parent) : node;
+        }
+
+        int height = node.height;
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        int newHeight = Math.max(leftHeight, rightHeight) + 1;
+        int balanceFactor = leftHeight - rightHeight;
+        if (balanceFactor > 1) {
+            return reBalanceToRight(parent, node, left, rightHeight);
+        } else if (balanceFactor < -1) {
+            return reBalanceToLeft(parent, node, right, leftHeight);
+        } else if (newHeight != height) {
+            node.height = newHeight;
+            return fixHeight(parent);
+        }
+        return null;
+    }
+
+    private Node<T> reBalanceToRight(Node<T> parent, Node<T> node, Node<T> left, int rightHeight) {
+        synchronized (left) {
+            int leftHeight = left.height;
+            if (leftHeight - rightHeight <= 1) {
+                return node;
+            }
+            Node<T> leftRight = left.right;
+            int leftLeftHeight = height(left.left);
+            int leftRightHeight = height(leftRight);
+            if (leftLeftHeight >= leftRightHeight) {
+                return rotateRight(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightHeight);
+            }
+            synchronized (leftRight) {
+                leftRightHeight = leftRight.height;
+                if (leftLeftHeight >= leftRightHeight) {
+                    return rotateRight(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightHeight);
+                }
+                // the double rotation is only done if it doesn't leave the left node damaged
+                int leftRightLeftHeight = height(leftRight.left);
+                int balanceFactor = leftLeftHeight - leftRightLeftHeight;
+                if (balanceFactor >= -1 && balanceFactor <= 1 && !((leftLeftHeight == 0 || leftRightLeftHeight == 0) && !left.present)) {
+                    return rotateRightOverLeft(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightLeftHeight);
+                }
+                if (leftRightLeftHeight == 0 && !left.present) {
+                    // the left routing node would be left with a single child below the node, so it's rotated down
+                    // first, where it gets unlinked and the damage goes up to the node
+                    return rotateLeft(node, left, leftLeftHeight, leftRight, null, 0, height(leftRight.right));
+                }
+            }
+            // otherwise the left node is rebalanced on its own first
+            return reBalanceToLeft(node, left, leftRight, leftLeftHeight);
+        }
+    }
+
+    private Node<T> reBalanceToLeft(Node<T> parent, Node<T> node, Node<T> right, int leftHeight) {
+        synchronized (right) {
+            int rightHeight = right.height;
+            if (leftHeight - rightHeight >= -1) {
+                return node;
+            }
+            Node<T> rightLeft = right.left;
+            int rightLeftHeight = height(rightLeft);
+            int rightRightHeight = height(right.right);
+            if (rightRightHeight >= rightLeftHeight) {
+                return rotateLeft(parent, node, leftHeight, right, rightLeft, rightLeftHeight, rightRightHeight);
+            }
+            synchronized (rightLeft) {
+                rightLeftHeight = rightLeft.height;
+                if (rightRightHeight >= rightLeftHeight) {
+                    return rotateLeft(parent, node, leftHeight, right, rightLeft, rightLeftHeight, rightRightHeight);
+                }
+                int rightLeftRightHeight = height(rightLeft.right);
+                int balanceFactor = rightRightHeight - rightLeftRightHeight;
+                if (balanceFactor >= -1 && balanceFactor <= 1 && !((rightRightHeight == 0 || rightLeftRightHeight == 0) && !right.present)) {
+                    return rotateLeftOverRight(parent, node, leftHeight, right, rightLeft, rightRightHeight, rightLeftRightHeight);
+                }
+                if (rightLeftRightHeight == 0 && !right.present) {
+                    return rotateRight(node, right, rightLeft, rightRightHeight, height(rightLeft.left), null, 0);
+                }
+            }
+            return reBalanceToRight(node, right, rightLeft, rightRightHeight);
+        }
+    }
+
+    private Node<T> rotateRight(Node<T> parent, Node<T> node, Node<T> left, int rightHeight, int leftLeftHeight, Node<T> leftRight, int leftRightHeight) {
+        long nodeVersion = node.version;
+        Node<T> parentLeft = parent.left;
+        node.version = beginShrink(nodeVersion);
+
+        // links are changed in the order that keeps concurrent readers of all nodes but the shrinking one right
+        node.left = leftRight;
+        if (leftRight != null) {
+            leftRight.parent = node;
+        }
+        left.right = node;
+        node.parent = left;
+        if (parentLeft == node) {
+            parent.left = left;
+        } else {
+            parent.right = left;
+        }
+        left.parent = parent;
+
+        int nodeHeight = Math.max(leftRightHeight, rightHeight) + 1;
+        node.height = nodeHeight;
+        left.height = Math.max(leftLeftHeight, nodeHeight) + 1;
+
+        node.version = endShrink(nodeVersion);
+
+        // the node went down and is the deepest damaged one, then goes the left node that took its place
+        int nodeBalanceFactor = leftRightHeight - rightHeight;
+        if (nodeBalanceFactor < -1 || nodeBalanceFactor > 1) {
+            return node;
+        }
+        if ((leftRight == null || rightHeight == 0) && !node.present) {
+            return node;
+        }
+        int leftBalanceFactor = leftLeftHeight - nodeHeight;
+        if (leftBalanceFactor < -1 || leftBalanceFactor > 1) {
+            return left;
+        }
+        if (leftLeftHeight == 0 && !left.present) {
+            return left;
+        }
+        return fixHeight(parent);
+    }
+
+    private Node<T> rotateLeft(Node<T> parent, Node<T> node, int leftHeight, Node<T> right, Node<T> rightLeft, int rightLeftHeight, int rightRightHeight) {
+        long nodeVersion = node.version;
+        Node<T> parentLeft = parent.left;
+        node.version = beginShrink(nodeVersion);
+
+        node.right = rightLeft;
+        if (rightLeft != null) {
+            rightLeft.parent = node;
+        }
+        right.left = node;
+        node.parent = right;
+        if (parentLeft == node) {
+            parent.left = right;
+        } else {
+            parent.right = right;
+        }
+        right.parent = parent;
+
+        int nodeHeight = Math.max(leftHeight, rightLeftHeight) + 1;
+        node.height = nodeHeight;
+        right.height = Math.max(nodeHeight, rightRightHeight) + 1;
+
+        node.version = endShrink(nodeVersion);
+
+        int nodeBalanceFactor = leftHeight - rightLeftHeight;
+        if (nodeBalanceFactor < -1 || nodeBalanceFactor > 1) {
+            return node;
+        }
+        if ((rightLeft == null || leftHeight == 0) && !node.present) {
+            return node;
+        }
+        int rightBalanceFactor = nodeHeight - rightRightHeight;
+        if (rightBalanceFactor < -1 || rightBalanceFactor > 1) {
+            return right;
+        }
+        if (rightRightHeight == 0 && !right.present) {
+            return right;
+        }
+        return fixHeight(parent);
+    }
+
+    private Node<T> rotateRightOverLeft(Node<T> parent, Node<T> node, Node<T> left, int rightHeight, int leftLeftHeight, Node<T> leftRight, int leftRightLeftHeight) {
+        long nodeVersion = node.version;
+        long leftVersion = left.version;
+        Node<T> parentLeft = parent.left;
+        Node<T> leftRightLeft = leftRight.left;
+        Node<T> leftRightRight = leftRight.right;
+        int leftRightRightHeight = height(leftRightRight);
+
+        node.version = beginShrink(nodeVersion);
+        left.version = beginShrink(leftVersion);
+
+        node.left = leftRightRight;
+        if (leftRightRight != null) {
+            leftRightRight.parent = node;
+        }
+        left.right = leftRightLeft;
+        if (leftRightLeft != null) {
+            leftRightLeft.parent = left;
+        }
+        leftRight.left = left;
+        left.parent = leftRight;
+        leftRight.right = node;
+        node.parent = leftRight;
+        if (parentLeft == node) {
+            parent.left = leftRight;
+        } else {
+            parent.right = leftRight;
+        }
+        leftRight.parent = parent;
+
+        int nodeHeight = Math.max(leftRightRightHeight, rightHeight) + 1;
+        node.height = nodeHeight;
+        int leftNewHeight = Math.max(leftLeftHeight, leftRightLeftHeight) + 1;
+        left.height = leftNewHeight;
+        leftRight.height = Math.max(leftNewHeight, nodeHeight) + 1;
+
+        node.version = endShrink(nodeVersion);
+        left.version = endShrink(leftVersion);
+
+        int nodeBalanceFactor = leftRightRightHeight - rightHeight;
+        if (nodeBalanceFactor < -1 || nodeBalanceFactor > 1) {
+            return node;
+        }
+        if ((leftRightRight == null || rightHeight == 0) && !node.present) {
+            return node;
+        }
+        int leftRightBalanceFactor = leftNewHeight - nodeHeight;
+        if (leftRightBalanceFactor < -1 || leftRightBalanceFactor > 1) {
+            return leftRight;
+        }
+        return fixHeight(parent);
+    }
+
+    private Node<T> rotateLeftOverRight(Node<T> parent, Node<T> node, int leftHeight, Node<T> right, Node<T> rightLeft, int rightRightHeight, int rightLeftRightHeight) {
+        long nodeVersion = node.version;
+        long rightVersion = right.version;
+        Node<T> parentLeft = parent.left;
+        Node<T> rightLeftLeft = rightLeft.left;
+        Node<T> rightLeftRight = rightLeft.right;
+        int rightLeftLeftHeight = height(rightLeftLeft);
+
+        node.version = beginShrink(nodeVersion);
+        right.version = beginShrink(rightVersion);
+
+        node.right = rightLeftLeft;
+        if (rightLeftLeft != null) {
+            rightLeftLeft.parent = node;
+        }
+        right.left = rightLeftRight;
+        if (rightLeftRight != null) {
+            rightLeftRight.parent = right;
+        }
+        rightLeft.right = right;
+        right.parent = rightLeft;
+        rightLeft.left = node;
+        node.parent = rightLeft;
+        if (parentLeft == node) {
+            parent.left = rightLeft;
+        } else {
+            parent.right = rightLeft;
+        }
+        rightLeft.parent = parent;
+
+        int nodeHeight = Math.max(leftHeight, rightLeftLeftHeight) + 1;
+        node.height = nodeHeight;
+        int rightNewHeight = Math.max(rightLeftRightHeight, rightRightHeight) + 1;
+        right.height = rightNewHeight;
+        rightLeft.height = Math.max(nodeHeight, rightNewHeight) + 1;
+
+        node.version = endShrink(nodeVersion);
+        right.version = endShrink(rightVersion);
+
+        int nodeBalanceFactor = leftHeight - rightLeftLeftHeight;
+        if (nodeBalanceFactor < -1 || nodeBalanceFactor > 1) {
+            return node;
+        }
+        if ((rightLeftLeft == null || leftHeight == 0) && !node.present) {
+            return node;
+        }
+        int rightLeftBalanceFactor = nodeHeight - rightNewHeight;
+        if (rightLeftBalanceFactor < -1 || rightLeftBalanceFactor > 1) {
+            return rightLeft;
+        }
+        return fixHeight(parent);
+    }
+
+    private static <T> int height(Node<T> node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static <T> T checkValue(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null is not allowed");
+        }
+        return value;
+    }
+
+    private static boolean isShrinking(long version) {
+        return (version & SHRINKING) != 0;
+    }
+
+    private static boolean isUnlinked(long version) {
+        return (version & UNLINKED) != 0;
+    }
+
+    private static boolean isShrinkingOrUnlinked(long version) {
+        return (version & (SHRINKING | UNLINKED)) != 0;
+    }
+
+    private static boolean hasShrunkOrUnlinked(long previousVersion, long version) {
+        return previousVersion != version || isUnlinked(version);
+    }
+
+    private static long beginShrink(long version) {
+        return version | SHRINKING;
+    }
+
+    private static long endShrink(long version) {
+        // clears the shrinking bit and carries into the counter
+        return (version | SHRINKING) + SHRINKING;
+    }
+
+    /**
+     * Node with height counted from 1 for a leaf, so that an absent child has height 0. A node is locked by
+     * synchronizing on it.
+     */
+    private static final class Node<T> {
+        private final T value;
+        private volatile int height;
+        private volatile boolean present;
+        private volatile long version;
+        private volatile Node<T> parent, left, right;
+
+        private Node(T value, int height, boolean present, Node<T> parent) {
+            this.value = value;
+            this.height = height;
+            this.present = present;
+            this.parent = parent;
+        }
+
+        private Node<T> child(int direction) {
+            return direction < 0 ? left : right;
+        }
+
+        private void setChild(int direction, Node<T> child) {
+            if (direction < 0) {
+                left = child;
+            } else {
+                right = child;
+            }
+        }
+
+        /**
+         * Spins, and then yields, while the node is being rotated. It doesn't take the lock of the node, so readers never
+         * block on it.
+         */
+        private void waitUntilShrinkCompleted(long shrinkingVersion) {
+            if (!isShrinking(shrinkingVersion)) {
+                return;
+            }
+            for (int i = 0; i < SPIN_COUNT; i++) {
+                if (version != shrinkingVersion) {
+                    return;
+                }
+                Thread.onSpinWait();
+            }
+            while (version == shrinkingVersion) {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.open_structures.avl_tree;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * AVL tree of distinct {@code int} keys in their natural order. Nodes live in parallel primitive arrays: the key, slot
+ * numbers of the left and the right child and of the parent, and the height in a byte. That makes 17 bytes per node,
+ * with no objects allocated per key.
+ */
+public class IntAVLTree extends SlotAVLTree {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] rights = new int[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private byte[] heights = new byte[INITIAL_CAPACITY];
+
+    private int probe;
+
+    /**
+     * Joins two trees given that every key of the left tree is less than any key of the right one. Nodes of the smaller
+     * tree are copied into the arrays of the bigger one, and then the trees are linked in O(log n).
+     * <p>
+     * The returned tree is one of the given trees, the other one is left empty.
+     */
+    public static IntAVLTree join(IntAVLTree left, IntAVLTree right) {
+        if (left == null || right == null) {
+            throw new IllegalArgumentException();
+        }
+        if (!left.isEmpty() && !right.isEmpty() && left.last() >= right.first()) {
+            throw new IllegalArgumentException("Keys of left and right trees either overlap or trees are in the wrong order. Left has to be less than right");
+        }
+
+        return SlotAVLTree.join(left, right);
+    }
+
+    public void insert(int key) {
+        probe = key;
+        if (!insertProbe()) {
+            throw new IllegalArgumentException("Tree already has value " + key + ". Addition of duplicated values is not allowed");
+        }
+    }
+
+    public boolean contains(int key) {
+        probe = key;
+        return findProbe() != NIL;
+    }
+
+    public void delete(int key) {
+        probe = key;
+        if (!deleteProbe()) {
+            throw new IllegalArgumentException(key + " does not belong to this tree");
+        }
+    }
+
+    /**
+     * @return the smallest key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public int first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return keys[leftmost(root)];
+    }
+
+    /**
+     * @return the greatest key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public int last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return keys[rightmost(root)];
+    }
+
+    /**
+     * @return iterator over the keys in ascending order
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = isEmpty() ? NIL : leftmost(root);
+
+            @Override
+            public boolean hasNext() {
+                return next != NIL;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next == NIL) {
+                    throw new NoSuchElementException();
+                }
+                int key = keys[next];
+                next = successor(next);
+                return key;
+            }
+        };
+    }
+
+    /**
+     * @return keys in ascending order
+     */
+    public int[] toArray() {
+        int[] array = new int[size];
+        PrimitiveIterator.OfInt iterator = iterator();
+        for (int i = 0; i < array.length; i++) {
+            array[i] = iterator.nextInt();
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    @Override
+    int left(int node) {
+        return lefts[node];
+    }
+
+    @Override
+    int right(int node) {
+        return rights[node];
+    }
+
+    @Override
+    int parent(int node) {
+        return parents[node];
+    }
+
+    @Override
+    int height(int node) {
+        return heights[node];
+    }
+
+    @Override
+    void setLeft(int node, int left) {
+        lefts[node] = left;
+    }
+
+    @Override
+    void setRight(int node, int right) {
+        rights[node] = right;
+    }
+
+    @Override
+    void setParent(int node, int parent) {
+        parents[node] = parent;
+    }
+
+    @Override
+    void setHeight(int node, int height) {
+        heights[node] = (byte) height;
+    }
+
+    @Override
+    void ensureCapacity(int capacity) {
+        if (capacity > keys.length) {
+            int newCapacity = Math.max(capacity, keys.length + (keys.length >> 1));
+            keys = Arrays.copyOf(keys, newCapacity);
+            lefts = Arrays.copyOf(lefts, newCapacity);
+            rights = Arrays.copyOf(rights, newCapacity);
+            parents = Arrays.copyOf(parents, newCapacity);
+            heights = Arrays.copyOf(heights, newCapacity);
+        }
+    }
+
+    @Override
+    int compareProbe(int node) {
+        return Integer.compare(probe, keys[node]);
+    }
+
+    @Override
+    void storeProbe(int node) {
+        keys[node] = probe;
+    }
+
+    @Override
+    void copyKey(int fromNode, int toNode) {
+        keys[toNode] = keys[fromNode];
+    }
+
+    @Override
+    void copyKeys(SlotAVLTree from, int fromNode, int toNode, int count) {
+        System.arraycopy(((IntAVLTree) from).keys, fromNode, keys, toNode, count);
+    }
+}
@@ -0,0 +1,14 @@
+package org.open_structures.avl_tree;
+
+/**
+ * Half-open interval of points, from the start inclusive to the end exclusive, kept by {@link AVLIntervalTree}.
+ * Implementations may carry data of their own, such as the reservation the interval belongs to.
+ *
+ * @param <P> type of the points
+ */
+public interface Interval<P> {
+
+    P getStart();
+
+    P getEnd();
+}
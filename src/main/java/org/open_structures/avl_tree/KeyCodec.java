@@ -0,0 +1,61 @@
+package org.open_structures.avl_tree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes keys of {@link MappedAVLTree} into records of a fixed width and reads them back.
+ *
+ * @param <T> type of the keys
+ */
+public interface KeyCodec<T> {
+
+    /**
+     * @return number of bytes every key takes
+     */
+    int width();
+
+    /**
+     * Writes the key at the index of the buffer, taking {@link #width()} bytes at most.
+     */
+    void write(T key, ByteBuffer buffer, int index);
+
+    T read(ByteBuffer buffer, int index);
+
+    static KeyCodec<Integer> integers() {
+        return new KeyCodec<>() {
+            @Override
+            public int width() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public void write(Integer key, ByteBuffer buffer, int index) {
+                buffer.putInt(index, key);
+            }
+
+            @Override
+            public Integer read(ByteBuffer buffer, int index) {
+                return buffer.getInt(index);
+            }
+        };
+    }
+
+    static KeyCodec<Long> longs() {
+        return new KeyCodec<>() {
+            @Override
+            public int width() {
+                return Long.BYTES;
+            }
+
+            @Override
+            public void write(Long key, ByteBuffer buffer, int index) {
+                buffer.putLong(index, key);
+            }
+
+            @Override
+            public Long read(ByteBuffer buffer, int index) {
+                return buffer.getLong(index);
+            }
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package org.open_structures.avl_tree;
+
+import java.util.Arrays;
+
+/**
+ * AVL tree of distinct {@code long} keys in their natural order. Nodes live in parallel primitive arrays: the key, slot
+ * numbers of the left and the right child and of the parent, and the height in a byte. That makes 21 bytes per node,
+ * with no objects allocated per key.
+ */
+public class LongAVLTree extends LongSlotAVLTree {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] rights = new int[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private byte[] heights = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Joins two trees given that every key of the left tree is less than any key of the right one. Nodes of the smaller
+     * tree are copied into the arrays of the bigger one, and then the trees are linked in O(log n).
+     * <p>
+     * The returned tree is one of the given trees, the other one is left empty.
+     */
+    public static LongAVLTree join(LongAVLTree left, LongAVLTree right) {
+        checkJoinable(left, right);
+
+        return SlotAVLTree.join(left, right);
+    }
+
+    @Override
+    long key(int node) {
+        return keys[node];
+    }
+
+    @Override
+    void setKey(int node, long key) {
+        keys[node] = key;
+    }
+
+    @Override
+    int left(int node) {
+        return lefts[node];
+    }
+
+    @Override
+    int right(int node) {
+        return rights[node];
+    }
+
+    @Override
+    int parent(int node) {
+        return parents[node];
+    }
+
+    @Override
+    int height(int node) {
+        return heights[node];
+    }
+
+    @Override
+    void setLeft(int node, int left) {
+        lefts[node] = left;
+    }
+
+    @Override
+    void setRight(int node, int right) {
+        rights[node] = right;
+    }
+
+    @Override
+    void setParent(int node, int parent) {
+        parents[node] = parent;
+    }
+
+    @Override
+    void setHeight(int node, int height) {
+        heights[node] = (byte) height;
+    }
+
+    @Override
+    void ensureCapacity(int capacity) {
+        if (capacity > keys.length) {
+            int newCapacity = Math.max(capacity, keys.length + (keys.length >> 1));
+            keys = Arrays.copyOf(keys, newCapacity);
+            lefts = Arrays.copyOf(lefts, newCapacity);
+            rights = Arrays.copyOf(rights, newCapacity);
+            parents = Arrays.copyOf(parents, newCapacity);
+            heights = Arrays.copyOf(heights, newCapacity);
+        }
+    }
+
+    @Override
+    void copyKeys(SlotAVLTree from, int fromNode, int toNode, int count) {
+        System.arraycopy(((LongAVLTree) from).keys, fromNode, keys, toNode, count);
+    }
+}
@@ -0,0 +1,126 @@
+package org.open_structures.avl_tree;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Slot tree of distinct {@code long} keys in their natural order, whatever storage its subclass keeps the nodes in.
+ */
+abstract class LongSlotAVLTree extends SlotAVLTree {
+
+    private long probe;
+
+    abstract long key(int node);
+
+    abstract void setKey(int node, long key);
+
+    /**
+     * Checks that every key of the left tree is less than any key of the right one, so that they can be joined.
+     */
+    static void checkJoinable(LongSlotAVLTree left, LongSlotAVLTree right) {
+        if (left == null || right == null) {
+            throw new IllegalArgumentException();
+        }
+        if (!left.isEmpty() && !right.isEmpty() && left.last() >= right.first()) {
+            throw new IllegalArgumentException("Keys of left and right trees either overlap or trees are in the wrong order. Left has to be less than right");
+        }
+    }
+
+    public void insert(long key) {
+        probe = key;
+        if (!insertProbe()) {
+            throw new IllegalArgumentException("Tree already has value " + key + ". Addition of duplicated values is not allowed");
+        }
+    }
+
+    public boolean contains(long key) {
+        probe = key;
+        return findProbe() != NIL;
+    }
+
+    public void delete(long key) {
+        probe = key;
+        if (!deleteProbe()) {
+            throw new IllegalArgumentException(key + " does not belong to this tree");
+        }
+    }
+
+    /**
+     * @return the smallest key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public long first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return key(leftmost(root));
+    }
+
+    /**
+     * @return the greatest key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public long last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return key(rightmost(root));
+    }
+
+    /**
+     * @return iterator over the keys in ascending order
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int next = isEmpty() ? NIL : leftmost(root);
+
+            @Override
+            public boolean hasNext() {
+                return next != NIL;
+            }
+
+            @Override
+            public long nextLong() {
+                if (next == NIL) {
+                    throw new NoSuchElementException();
+                }
+                long key = key(next);
+                next = successor(next);
+                return key;
+            }
+        };
+    }
+
+    /**
+     * @return keys in ascending order
+     */
+    public long[] toArray() {
+        long[] array = new long[size];
+        PrimitiveIterator.OfLong iterator = iterator();
+        for (int i = 0; i < array.length; i++) {
+            array[i] = iterator.nextLong();
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    @Override
+    int compareProbe(int node) {
+        return Long.compare(probe, key(node));
+    }
+
+    @Override
+    void storeProbe(int node) {
+        setKey(node, probe);
+    }
+
+    @Override
+    void copyKey(int fromNode, int toNode) {
+        setKey(toNode, key(fromNode));
+    }
+}
@@ -0,0 +1,481 @@
+package org.open_structures.avl_tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * AVL tree of distinct keys whose nodes live in a memory-mapped file, so the tree can be bigger than the heap and the
+ * operating system pages it in and out as it's used. The file starts with a header page, followed by records of a fixed
+ * size: the key written by a {@link KeyCodec}, slot numbers of the left and the right child and of the parent, and the
+ * height. Rotations update the links of the records right in the mapped pages.
+ * <p>
+ * Records are mapped in chunks, which are added as the tree grows. Slots of deleted nodes are linked into a free list
+ * and taken by the next insertions, so the file doesn't shrink. The header is updated on every change, and
+ * {@link #force()} writes the changes to the storage device.
+ * <p>
+ * {@link #getRoot()} and {@link #find(Object)} return nodes that read the records, so the tree can be navigated through
+ * {@link AVLNode}. Nodes are valid until the tree is changed.
+ */
+public class MappedAVLTree<T> extends SlotAVLTree implements Iterable<T>, Closeable {
+
+    private static final int DEFAULT_CHUNK_CAPACITY = 1 << 16;
+
+    private static final int HEADER_BYTES = 4096;
+    private static final int MAGIC = 0x41564c4d; // "AVLM"
+    private static final int VERSION = 1;
+    // header fields
+    private static final int MAGIC_FIELD = 0;
+    private static final int VERSION_FIELD = 4;
+    private static final int KEY_WIDTH_FIELD = 8;
+    private static final int CHUNK_CAPACITY_FIELD = 12;
+    private static final int ROOT_FIELD = 16;
+    private static final int SIZE_FIELD = 20;
+    private static final int SLOT_COUNT_FIELD = 24;
+    private static final int FREE_HEAD_FIELD = 28;
+
+    private final FileChannel channel;
+    private final Comparator<? super T> comparator;
+    private final KeyCodec<T> codec;
+    private final MappedByteBuffer header;
+    private final int chunkShift;
+    private final int chunkMask;
+    // record fields, the key comes first
+    private final int leftField;
+    private final int rightField;
+    private final int parentField;
+    private final int heightField;
+    private final int recordBytes;
+
+    private MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+    private int slotCount;
+    private int freeHead = NIL;
+    private T probe;
+
+    private MappedAVLTree(FileChannel channel, Comparator<? super T> comparator, KeyCodec<T> codec, int chunkCapacity) throws IOException {
+        this.channel = channel;
+        this.comparator = comparator;
+        this.codec = codec;
+        this.leftField = codec.width();
+        this.rightField = leftField + Integer.BYTES;
+        this.parentField = rightField + Integer.BYTES;
+        this.heightField = parentField + Integer.BYTES;
+        this.recordBytes = heightField + 1;
+
+        long fileBytes = channel.size();
+        boolean created = fileBytes == 0;
+        if (!created) {
+            // the header is checked before anything is mapped, as mapping would grow a file that is not a tree
+            ByteBuffer stored = readHeader(channel, fileBytes);
+            if (stored.getInt(KEY_WIDTH_FIELD) != codec.width()) {
+                throw new IOException("Keys of the file take " + stored.getInt(KEY_WIDTH_FIELD) + " bytes, while the codec takes " + codec.width());
+            }
+            chunkCapacity = stored.getInt(CHUNK_CAPACITY_FIELD);
+            root = stored.getInt(ROOT_FIELD);
+            size = stored.getInt(SIZE_FIELD);
+            slotCount = stored.getInt(SLOT_COUNT_FIELD);
+            freeHead = stored.getInt(FREE_HEAD_FIELD);
+            checkHeader(chunkCapacity, fileBytes);
+        }
+        this.header = channel.map(READ_WRITE, 0, HEADER_BYTES);
+        if (created) {
+            header.putInt(MAGIC_FIELD, MAGIC);
+            header.putInt(VERSION_FIELD, VERSION);
+            header.putInt(KEY_WIDTH_FIELD, codec.width());
+            header.putInt(CHUNK_CAPACITY_FIELD, chunkCapacity);
+            writeHeader();
+        }
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkCapacity);
+        this.chunkMask = chunkCapacity - 1;
+        ensureCapacity(slotCount);
+    }
+
+    /**
+     * Opens the tree kept in the file, or creates an empty one if the file doesn't exist or is empty.
+     *
+     * @throws IOException if the file can't be opened or has something else in it
+     */
+    public static <T> MappedAVLTree<T> open(Path file, Comparator<? super T> comparator, KeyCodec<T> codec) throws IOException {
+        return open(file, comparator, codec, DEFAULT_CHUNK_CAPACITY);
+    }
+
+    /**
+     * @param chunkCapacity number of records mapped at once, has to be a power of two. A tree that is already in the
+     *                      file keeps the capacity it was created with
+     */
+    public static <T> MappedAVLTree<T> open(Path file, Comparator<? super T> comparator, KeyCodec<T> codec, int chunkCapacity) throws IOException {
+        if (file == null || comparator == null || codec == null || codec.width() <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (chunkCapacity <= 0 || Integer.bitCount(chunkCapacity) != 1 || (long) chunkCapacity * (codec.width() + 13) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk capacity has to be a power of two, got " + chunkCapacity);
+        }
+
+        FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE);
+        try {
+            return new MappedAVLTree<>(channel, comparator, codec, chunkCapacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void insert(T key) {
+        probe = checkKey(key);
+        boolean inserted = insertProbe();
+        probe = null;
+        if (!inserted) {
+            throw new IllegalArgumentException("Tree already has value " + key + ". Addition of duplicated (equal) values is not allowed");
+        }
+        writeHeader();
+    }
+
+    public void delete(T key) {
+        probe = checkKey(key);
+        boolean deleted = deleteProbe();
+        probe = null;
+        if (!deleted) {
+            throw new IllegalArgumentException(key + " does not belong to this tree");
+        }
+        writeHeader();
+    }
+
+    public boolean contains(T key) {
+        return find(key) != null;
+    }
+
+    /**
+     * @return node that holds the key or null if there is no such node
+     */
+    public AVLNode<T> find(T key) {
+        probe = checkKey(key);
+        int node = findProbe();
+        probe = null;
+        return nodeAt(node);
+    }
+
+    /**
+     * @return null if the tree is empty
+     */
+    public AVLNode<T> getRoot() {
+        return nodeAt(root);
+    }
+
+    /**
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return key(leftmost(root));
+    }
+
+    /**
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return key(rightmost(root));
+    }
+
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * @return iterator over the keys in ascending order
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int next = isEmpty() ? NIL : leftmost(root);
+
+            @Override
+            public boolean hasNext() {
+                return next != NIL;
+            }
+
+            @Override
+            public T next() {
+                if (next == NIL) {
+                    throw new NoSuchElementException();
+                }
+                T key = key(next);
+                next = successor(next);
+                return key;
+            }
+        };
+    }
+
+    /**
+     * Empties the tree. The file keeps its size, and its records are reused by the next insertions.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        slotCount = 0;
+        freeHead = NIL;
+        writeHeader();
+    }
+
+    /**
+     * Writes the changes in the mapped pages to the storage device.
+     */
+    public void force() {
+        header.force();
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Forces the changes and closes the file. The mapped pages are released once their buffers are collected.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (T key : this) {
+            builder.append(builder.length() > 1 ? ", " : "").append(key);
+        }
+        return builder.append(']').toString();
+    }
+
+    @Override
+    int allocateSlot() {
+        if (freeHead != NIL) {
+            int slot = freeHead;
+            freeHead = left(slot);
+            return slot;
+        }
+        ensureCapacity(slotCount + 1);
+        return slotCount++;
+    }
+
+    @Override
+    void freeSlot(int node) {
+        setLeft(node, freeHead);
+        freeHead = node;
+    }
+
+    @Override
+    int compareProbe(int node) {
+        return comparator.compare(probe, key(node));
+    }
+
+    @Override
+    void storeProbe(int node) {
+        codec.write(probe, chunk(node), offset(node));
+    }
+
+    @Override
+    void copyKey(int fromNode, int toNode) {
+        copyRecordKey(chunk(fromNode), offset(fromNode), toNode);
+    }
+
+    @Override
+    void copyKeys(SlotAVLTree from, int fromNode, int toNode, int count) {
+        MappedAVLTree<?> other = (MappedAVLTree<?>) from;
+        for (int i = 0; i < count; i++) {
+            copyRecordKey(other.chunk(fromNode + i), other.offset(fromNode + i), toNode + i);
+        }
+    }
+
+    @Override
+    int left(int node) {
+        return chunk(node).getInt(offset(node) + leftField);
+    }
+
+    @Override
+    int right(int node) {
+        return chunk(node).getInt(offset(node) + rightField);
+    }
+
+    @Override
+    int parent(int node) {
+        return chunk(node).getInt(offset(node) + parentField);
+    }
+
+    @Override
+    int height(int node) {
+        return chunk(node).get(offset(node) + heightField);
+    }
+
+    @Override
+    void setLeft(int node, int left) {
+        chunk(node).putInt(offset(node) + leftField, left);
+    }
+
+    @Override
+    void setRight(int node, int right) {
+        chunk(node).putInt(offset(node) + rightField, right);
+    }
+
+    @Override
+    void setParent(int node, int parent) {
+        chunk(node).putInt(offset(node) + parentField, parent);
+    }
+
+    @Override
+    void setHeight(int node, int height) {
+        chunk(node).put(offset(node) + heightField, (byte) height);
+    }
+
+    /**
+     * Maps the chunks that are missing, which grows the file if needed.
+     */
+    @Override
+    void ensureCapacity(int capacity) {
+        int chunksNeeded = (int) (((long) capacity + chunkMask) >>> chunkShift);
+        if (chunksNeeded > chunks.length) {
+            int chunkCount = chunks.length;
+            long chunkBytes = (long) (chunkMask + 1) * recordBytes;
+            chunks = Arrays.copyOf(chunks, chunksNeeded);
+            try {
+                for (int i = chunkCount; i < chunksNeeded; i++) {
+                    chunks[i] = channel.map(READ_WRITE, HEADER_BYTES + i * chunkBytes, chunkBytes);
+                }
+            } catch (IOException e) {
+                chunks = Arrays.copyOf(chunks, chunkCount);
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel, long fileBytes) throws IOException {
+        ByteBuffer stored = ByteBuffer.allocate(FREE_HEAD_FIELD + Integer.BYTES);
+        if (fileBytes >= HEADER_BYTES) {
+            int read = 0;
+            while (read >= 0 && stored.hasRemaining()) {
+                read = channel.read(stored, stored.position());
+            }
+        }
+        if (stored.hasRemaining() || stored.getInt(MAGIC_FIELD) != MAGIC || stored.getInt(VERSION_FIELD) != VERSION) {
+            throw new IOException("Not a tree file");
+        }
+        return stored;
+    }
+
+    /**
+     * Checks that the stored chunk capacity can be used for mapping and that the stored slots fit into the file, so a
+     * corrupt header is reported instead of growing the file.
+     */
+    private void checkHeader(int chunkCapacity, long fileBytes) throws IOException {
+        if (chunkCapacity <= 0 || Integer.bitCount(chunkCapacity) != 1 || (long) chunkCapacity * recordBytes > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt tree file: chunk capacity " + chunkCapacity);
+        }
+        long chunkCount = ((long) slotCount + chunkCapacity - 1) / chunkCapacity;
+        if (slotCount < 0 || HEADER_BYTES + chunkCount * chunkCapacity * recordBytes > fileBytes) {
+            throw new IOException("Corrupt tree file: " + slotCount + " slots don't fit into " + fileBytes + " bytes");
+        }
+        if (size < 0 || size > slotCount || (size == 0) != (root == NIL) || !isSlot(root) || !isSlot(freeHead)) {
+            throw new IOException("Corrupt tree file: size " + size + ", root " + root + " and free list head " + freeHead + " for " + slotCount + " slots");
+        }
+    }
+
+    private boolean isSlot(int node) {
+        return node == NIL || (node >= 0 && node < slotCount);
+    }
+
+    private T key(int node) {
+        return codec.read(chunk(node), offset(node));
+    }
+
+    private void copyRecordKey(ByteBuffer fromChunk, int fromOffset, int toNode) {
+        ByteBuffer toChunk = chunk(toNode);
+        int toOffset = offset(toNode);
+        for (int i = 0; i < leftField; i++) {
+            toChunk.put(toOffset + i, fromChunk.get(fromOffset + i));
+        }
+    }
+
+    private void writeHeader() {
+        header.putInt(ROOT_FIELD, root);
+        header.putInt(SIZE_FIELD, size);
+        header.putInt(SLOT_COUNT_FIELD, slotCount);
+        header.putInt(FREE_HEAD_FIELD, freeHead);
+    }
+
+    private MappedByteBuffer chunk(int node) {
+        return chunks[node >>> chunkShift];
+    }
+
+    private int offset(int node) {
+        return (node & chunkMask) * recordBytes;
+    }
+
+    private AVLNode<T> nodeAt(int node) {
+        return node != NIL ? new MappedNode(node) : null;
+    }
+
+    private static <T> T checkKey(T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("null is not allowed");
+        }
+        return key;
+    }
+
+    private final class MappedNode implements AVLNode<T> {
+        private final int slot;
+
+        private MappedNode(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public T getValue() {
+            return key(slot);
+        }
+
+        @Override
+        public AVLNode<T> getLeft() {
+            return nodeAt(left(slot));
+        }
+
+        @Override
+        public AVLNode<T> getRight() {
+            return nodeAt(right(slot));
+        }
+
+        @Override
+        public AVLNode<T> getParent() {
+            return nodeAt(parent(slot));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MappedAVLTree<?>.MappedNode other && other.slot == slot && other.tree() == MappedAVLTree.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return slot;
+        }
+
+        private MappedAVLTree<T> tree() {
+            return MappedAVLTree.this;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.open_structures.avl_tree;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * AVL tree of distinct {@code long} keys whose nodes live outside the heap, in slabs of direct {@link ByteBuffer}s.
+ * A node takes 24 bytes of a slab: the key, slot numbers of the left and the right child and of the parent, and the
+ * height. The heap only holds the slab buffers, so garbage collection doesn't scan the nodes however many there are.
+ * <p>
+ * Slabs are allocated as the tree grows and dropped as it shrinks, keeping one spare slab. The memory of a dropped slab
+ * is freed once its buffer is collected.
+ */
+public class OffHeapLongAVLTree extends LongSlotAVLTree {
+
+    private static final int DEFAULT_SLAB_CAPACITY = 1 << 16;
+
+    private static final int KEY = 0;
+    private static final int LEFT = 8;
+    private static final int RIGHT = 12;
+    private static final int PARENT = 16;
+    private static final int HEIGHT = 20;
+    private static final int NODE_BYTES = 24;
+
+    private final int slabShift;
+    private final int slabMask;
+    private ByteBuffer[] slabs = new ByteBuffer[0];
+
+    public OffHeapLongAVLTree() {
+        this(DEFAULT_SLAB_CAPACITY);
+    }
+
+    /**
+     * @param slabCapacity number of nodes in a slab, has to be a power of two
+     */
+    public OffHeapLongAVLTree(int slabCapacity) {
+        if (slabCapacity <= 0 || Integer.bitCount(slabCapacity) != 1 || slabCapacity > Integer.MAX_VALUE / NODE_BYTES) {
+            throw new IllegalArgumentException("Slab capacity has to be a power of two, got " + slabCapacity);
+        }
+        this.slabShift = Integer.numberOfTrailingZeros(slabCapacity);
+        this.slabMask = slabCapacity - 1;
+    }
+
+    /**
+     * Joins two trees given that every key of the left tree is less than any key of the right one. Nodes of the smaller
+     * tree are copied into the slabs of the bigger one, and then the trees are linked in O(log n).
+     * <p>
+     * The returned tree is one of the given trees, the other one is left empty.
+     */
+    public static OffHeapLongAVLTree join(OffHeapLongAVLTree left, OffHeapLongAVLTree right) {
+        checkJoinable(left, right);
+
+        return SlotAVLTree.join(left, right);
+    }
+
+    /**
+     * @return bytes of off-heap memory taken by the slabs
+     */
+    public long getAllocatedBytes() {
+        return (long) slabs.length * (slabMask + 1) * NODE_BYTES;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        slabs = new ByteBuffer[0];
+    }
+
+    @Override
+    boolean deleteProbe() {
+        if (!super.deleteProbe()) {
+            return false;
+        }
+        int slabsInUse = (size + slabMask) >>> slabShift;
+        if (slabs.length > slabsInUse + 1) {
+            slabs = Arrays.copyOf(slabs, slabsInUse + 1);
+        }
+        return true;
+    }
+
+    @Override
+    long key(int node) {
+        return slab(node).getLong(offset(node) + KEY);
+    }
+
+    @Override
+    void setKey(int node, long key) {
+        slab(node).putLong(offset(node) + KEY, key);
+    }
+
+    @Override
+    int left(int node) {
+        return slab(node).getInt(offset(node) + LEFT);
+    }
+
+    @Override
+    int right(int node) {
+        return slab(node).getInt(offset(node) + RIGHT);
+    }
+
+    @Override
+    int parent(int node) {
+        return slab(node).getInt(offset(node) + PARENT);
+    }
+
+    @Override
+    int height(int node) {
+        return slab(node).get(offset(node) + HEIGHT);
+    }
+
+    @Override
+    void setLeft(int node, int left) {
+        slab(node).putInt(offset(node) + LEFT, left);
+    }
+
+    @Override
+    void setRight(int node, int right) {
+        slab(node).putInt(offset(node) + RIGHT, right);
+    }
+
+    @Override
+    void setParent(int node, int parent) {
+        slab(node).putInt(offset(node) + PARENT, parent);
+    }
+
+    @Override
+    void setHeight(int node, int height) {
+        slab(node).put(offset(node) + HEIGHT, (byte) height);
+    }
+
+    @Override
+    void ensureCapacity(int capacity) {
+        int slabsNeeded = (int) (((long) capacity + slabMask) >>> slabShift);
+        if (slabsNeeded > slabs.length) {
+            int slabCount = slabs.length;
+            slabs = Arrays.copyOf(slabs, slabsNeeded);
+            for (int i = slabCount; i < slabsNeeded; i++) {
+                slabs[i] = ByteBuffer.allocateDirect((slabMask + 1) * NODE_BYTES).order(ByteOrder.nativeOrder());
+            }
+        }
+    }
+
+    @Override
+    void copyKeys(SlotAVLTree from, int fromNode, int toNode, int count) {
+        OffHeapLongAVLTree other = (OffHeapLongAVLTree) from;
+        for (int i = 0; i < count; i++) {
+            setKey(toNode + i, other.key(fromNode + i));
+        }
+    }
+
+    private ByteBuffer slab(int node) {
+        return slabs[node >>> slabShift];
+    }
+
+    private int offset(int node) {
+        return (node & slabMask) * NODE_BYTES;
+    }
+}
@@ -0,0 +1,352 @@
+package org.open_structures.avl_tree;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static java.lang.Math.max;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable AVL tree. {@link #insert(Object)} and {@link #delete(Object)} leave the tree as it is and return a new
+ * version, which copies the O(log n) nodes on the path from the root and shares the rest with the old version.
+ * <p>
+ * Nodes have no parent links and all their fields are final, so any version can be read by any number of threads
+ * without locking, while a writer keeps making new versions. Elements are compared by the comparator alone, same as in
+ * an index-free {@link AVLTree}.
+ */
+public final class PersistentAVLTree<T> implements Iterable<T> {
+
+    private final Comparator<? super T> comparator;
+    private final Node<T> root;
+
+    private PersistentAVLTree(Comparator<? super T> comparator, Node<T> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    public static <T> PersistentAVLTree<T> empty(Comparator<? super T> comparator) {
+        return new PersistentAVLTree<>(requireNonNull(comparator), null);
+    }
+
+    /**
+     * @return new version of the tree that has the value
+     * @throws IllegalArgumentException if the tree already has an equal value
+     */
+    public PersistentAVLTree<T> insert(T value) {
+        return new PersistentAVLTree<>(comparator, insert(root, checkValue(value)));
+    }
+
+    /**
+     * @return new version of the tree that doesn't have the value
+     * @throws IllegalArgumentException if the tree doesn't have the value
+     */
+    public PersistentAVLTree<T> delete(T value) {
+        return new PersistentAVLTree<>(comparator, delete(root, checkValue(value)));
+    }
+
+    /**
+     * Versions never change, so a version is its own snapshot. It's here for the code that shares the current version
+     * of a tree with readers and wants to say so.
+     *
+     * @return this version
+     */
+    public PersistentAVLTree<T> snapshot() {
+        return this;
+    }
+
+    public boolean contains(T value) {
+        checkValue(value);
+        Node<T> node = root;
+        while (node != null) {
+            int order = comparator.compare(value, node.value);
+            if (order == 0) {
+                return true;
+            }
+            node = order < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * @return number of levels in the tree, 0 if the tree is empty
+     */
+    public int getHeight() {
+        return height(root) + 1;
+    }
+
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * @return number of elements less than the value
+     */
+    public int rank(T value) {
+        checkValue(value);
+        int rank = 0;
+        Node<T> node = root;
+        while (node != null) {
+            if (comparator.compare(node.value, value) < 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * @return element at the index in ascending order
+     * @throws IndexOutOfBoundsException if the index is negative or not less than the size
+     */
+    public T select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T first() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<T> node = root;
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.value;
+    }
+
+    /**
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T last() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<T> node = root;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.value;
+    }
+
+    /**
+     * @return the least element greater than or equal to the value, null if there is no such element
+     */
+    public T ceiling(T value) {
+        return ceiling(value, true);
+    }
+
+    /**
+     * @return the least element strictly greater than the value, null if there is no such element
+     */
+    public T higher(T value) {
+        return ceiling(value, false);
+    }
+
+    /**
+     * @return the greatest element less than or equal to the value, null if there is no such element
+     */
+    public T floor(T value) {
+        return floor(value, true);
+    }
+
+    /**
+     * @return the greatest element strictly less than the value, null if there is no such element
+     */
+    public T lower(T value) {
+        return floor(value, false);
+    }
+
+    /**
+     * Iterates over the elements in ascending order. With no parent links to climb, the iterator keeps the path from
+     * the root on a stack of O(log n) nodes.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private final ArrayDeque<Node<T>> path = new ArrayDeque<>();
+
+            {
+                pushLeftSpine(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<T> node = path.pop();
+                pushLeftSpine(node.right);
+                return node.value;
+            }
+
+            private void pushLeftSpine(Node<T> node) {
+                for (; node != null; node = node.left) {
+                    path.push(node);
+                }
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (T value : this) {
+            builder.append(builder.length() > 1 ? ", " : "").append(value);
+        }
+        return builder.append(']').toString();
+    }
+
+    private T ceiling(T value, boolean inclusive) {
+        checkValue(value);
+        T ceiling = null;
+        Node<T> node = root;
+        while (node != null) {
+            int order = comparator.compare(node.value, value);
+            if (order > 0 || (inclusive && order == 0)) {
+                ceiling = node.value;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return ceiling;
+    }
+
+    private T floor(T value, boolean inclusive) {
+        checkValue(value);
+        T floor = null;
+        Node<T> node = root;
+        while (node != null) {
+            int order = comparator.compare(node.value, value);
+            if (order < 0 || (inclusive && order == 0)) {
+                floor = node.value;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return floor;
+    }
+
+    private Node<T> insert(Node<T> node, T value) {
+        if (node == null) {
+            return new Node<>(value, null, null);
+        }
+        int order = comparator.compare(value, node.value);
+        if (order == 0) {
+            throw new IllegalArgumentException("Tree already has value " + value + ". Addition of duplicated (equal) values is not allowed");
+        }
+        return order < 0 ? balance(node.value, insert(node.left, value), node.right) : balance(node.value, node.left, insert(node.right, value));
+    }
+
+    private Node<T> delete(Node<T> node, T value) {
+        if (node == null) {
+            throw new IllegalArgumentException(value + " does not belong to this tree");
+        }
+        int order = comparator.compare(value, node.value);
+        if (order < 0) {
+            return balance(node.value, delete(node.left, value), node.right);
+        } else if (order > 0) {
+            return balance(node.value, node.left, delete(node.right, value));
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        }
+        // the successor takes the place of the deleted node
+        Node<T> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.value, node.left, deleteFirst(node.right));
+    }
+
+    private static <T> Node<T> deleteFirst(Node<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.value, deleteFirst(node.left), node.right);
+    }
+
+    /**
+     * Makes a node out of the value and the subtrees, whose heights differ by 2 at most, rotating it if they do.
+     */
+    private static <T> Node<T> balance(T value, Node<T> left, Node<T> right) {
+        int balanceFactor = height(left) - height(right);
+        if (balanceFactor > 1) {
+            if (height(left.left) < height(left.right)) { // left-right case
+                return new Node<>(left.right.value, new Node<>(left.value, left.left, left.right.left), new Node<>(value, left.right.right, right));
+            }
+            return new Node<>(left.value, left.left, new Node<>(value, left.right, right));
+        } else if (balanceFactor < -1) {
+            if (height(right.right) < height(right.left)) { // right-left case
+                return new Node<>(right.left.value, new Node<>(value, left, right.left.left), new Node<>(right.value, right.left.right, right.right));
+            }
+            return new Node<>(right.value, new Node<>(value, left, right.left), right.right);
+        }
+        return new Node<>(value, left, right);
+    }
+
+    private static <T> int height(Node<T> node) {
+        return node != null ? node.height : -1;
+    }
+
+    private static <T> int size(Node<T> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static <T> T checkValue(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null is not allowed");
+        }
+        return value;
+    }
+
+    private static final class Node<T> {
+        private final T value;
+        private final Node<T> left, right;
+        private final int height;
+        private final int size;
+
+        private Node(T value, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = max(PersistentAVLTree.height(left), PersistentAVLTree.height(right)) + 1;
+            this.size = PersistentAVLTree.size(left) + PersistentAVLTree.size(right) + 1;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package org.open_structures.avl_tree;
+
+/**
+ * Base of the trees that keep their nodes in numbered slots of some storage, such as primitive arrays, and link them by
+ * slot numbers instead of references. The balancing lives here, while subclasses keep the keys and the links.
+ * <p>
+ * Keys never leave the storage of a subclass. To look a key up, the subclass remembers it as the probe and the tree
+ * compares the probe with the keys in the slots, so primitive keys are never boxed.
+ * <p>
+ * By default slots are kept dense: nodes take slots from 0 to size - 1, and the slot of a deleted node is taken by the
+ * node from the last slot. Subclasses may manage free slots their own way, but only trees with dense slots can be
+ * joined.
+ */
+abstract class SlotAVLTree {
+
+    static final int NIL = -1;
+
+    int root = NIL;
+    int size;
+
+    abstract int left(int node);
+
+    abstract int right(int node);
+
+    abstract int parent(int node);
+
+    abstract int height(int node);
+
+    abstract void setLeft(int node, int left);
+
+    abstract void setRight(int node, int right);
+
+    abstract void setParent(int node, int parent);
+
+    abstract void setHeight(int node, int height);
+
+    /**
+     * Makes the storage big enough to have slots from 0 to capacity - 1.
+     */
+    abstract void ensureCapacity(int capacity);
+
+    /**
+     * @return negative if the probe is less than the key of the node, zero if equal, positive if greater
+     */
+    abstract int compareProbe(int node);
+
+    abstract void storeProbe(int node);
+
+    abstract void copyKey(int fromNode, int toNode);
+
+    /**
+     * Copies keys of the given number of nodes from the storage of another tree of the same class.
+     */
+    abstract void copyKeys(SlotAVLTree from, int fromNode, int toNode, int count);
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    /**
+     * @return number of levels in the tree, 0 if the tree is empty
+     */
+    public int getHeight() {
+        return heightOf(root) + 1;
+    }
+
+    public void clear() {
+        root = NIL;
+        size = 0;
+    }
+
+    /**
+     * Joins two trees of the same class, given that every key of the left tree is less than any key of the right one.
+     * Nodes of the smaller tree are copied into the storage of the bigger one, which takes O(m) for the smaller tree of
+     * size m, and then the trees are linked in O(log n).
+     *
+     * @return one of the given trees, the other one is left empty
+     */
+    static <S extends SlotAVLTree> S join(S left, S right) {
+        if (left.isEmpty()) {
+            return right;
+        } else if (right.isEmpty()) {
+            return left;
+        }
+
+        S joined = left.size >= right.size ? left : right;
+        SlotAVLTree tree = joined;
+        int otherRoot = tree.absorb(joined == left ? right : left);
+        int leftRoot = joined == left ? tree.root : otherRoot;
+        int rightRoot = joined == left ? otherRoot : tree.root;
+        tree.root = tree.join(leftRoot, rightRoot);
+        return joined;
+    }
+
+    int findProbe() {
+        int node = root;
+        while (node != NIL) {
+            int order = compareProbe(node);
+            if (order == 0) {
+                return node;
+            }
+            node = order < 0 ? left(node) : right(node);
+        }
+        return NIL;
+    }
+
+    /**
+     * @return false if the tree already has the probe
+     */
+    boolean insertProbe() {
+        if (root == NIL) {
+            root = newNode(NIL);
+            return true;
+        }
+        int node = root;
+        while (true) {
+            int order = compareProbe(node);
+            if (order == 0) {
+                return false;
+            }
+            int child = order < 0 ? left(node) : right(node);
+            if (child == NIL) {
+                int newNode = newNode(node);
+                if (order < 0) {
+                    setLeft(node, newNode);
+                } else {
+                    setRight(node, newNode);
+                }
+                retrace(node);
+                return true;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * @return false if the tree doesn't have the probe
+     */
+    boolean deleteProbe() {
+        int node = findProbe();
+        if (node == NIL) {
+            return false;
+        }
+        if (left(node) != NIL && right(node) != NIL) { // the successor, which has no left child, is deleted instead
+            int successor = leftmost(right(node));
+            copyKey(successor, node);
+            node = successor;
+        }
+
+        int child = left(node) != NIL ? left(node) : right(node);
+        int parent = parent(node);
+        if (child != NIL) {
+            setParent(child, parent);
+        }
+        if (parent == NIL) {
+            root = child;
+        } else {
+            replaceChild(parent, node, child);
+            retrace(parent);
+        }
+        size--;
+        freeSlot(node);
+        return true;
+    }
+
+    int leftmost(int node) {
+        while (left(node) != NIL) {
+            node = left(node);
+        }
+        return node;
+    }
+
+    int rightmost(int node) {
+        while (right(node) != NIL) {
+            node = right(node);
+        }
+        return node;
+    }
+
+    int successor(int node) {
+        if (right(node) != NIL) {
+            return leftmost(right(node));
+        }
+        int parent = parent(node);
+        while (parent != NIL && right(parent) == node) {
+            node = parent;
+            parent = parent(node);
+        }
+        return parent;
+    }
+
+    /**
+     * @return slot for a new node, the one after the last node by default
+     */
+    int allocateSlot() {
+        ensureCapacity(size + 1);
+        return size;
+    }
+
+    /**
+     * Frees the slot of a deleted node, which is not counted in the size any more. By default the node from the last
+     * slot moves into it.
+     */
+    void freeSlot(int node) {
+        int last = size;
+        if (node == last) {
+            return;
+        }
+        copyKey(last, node);
+        int left = left(last), right = right(last), parent = parent(last);
+        setLeft(node, left);
+        setRight(node, right);
+        setParent(node, parent);
+        setHeight(node, height(last));
+        if (left != NIL) {
+            setParent(left, node);
+        }
+        if (right != NIL) {
+            setParent(right, node);
+        }
+        if (parent == NIL) {
+            root = node;
+        } else {
+            replaceChild(parent, last, node);
+        }
+    }
+
+    private int newNode(int parent) {
+        int node = allocateSlot();
+        size++;
+        storeProbe(node);
+        setLeft(node, NIL);
+        setRight(node, NIL);
+        setParent(node, parent);
+        setHeight(node, 0);
+        return node;
+    }
+
+    /**
+     * Copies all the nodes of the other tree into the slots after the last one and leaves the other tree empty.
+     *
+     * @return root of the copied nodes
+     */
+    private int absorb(SlotAVLTree other) {
+        int offset = size;
+        ensureCapacity(size + other.size);
+        copyKeys(other, 0, offset, other.size);
+        for (int node = 0; node < other.size; node++) {
+            setLeft(offset + node, shift(other.left(node), offset));
+            setRight(offset + node, shift(other.right(node), offset));
+            setParent(offset + node, shift(other.parent(node), offset));
+            setHeight(offset + node, other.height(node));
+        }
+        int otherRoot = shift(other.root, offset);
+        size += other.size;
+        other.clear();
+        return otherRoot;
+    }
+
+    private static int shift(int node, int offset) {
+        return node != NIL ? node + offset : NIL;
+    }
+
+    /**
+     * Joins two subtrees through the rightmost node of the left one, which is taken out of it first.
+     *
+     * @return root of the joined subtree
+     */
+    private int join(int left, int right) {
+        int middle = rightmost(left);
+        int parentOfMiddle = parent(middle);
+        int leftOfMiddle = left(middle);
+        if (parentOfMiddle == NIL) {
+            left = leftOfMiddle;
+            if (left != NIL) {
+                setParent(left, NIL);
+            }
+        } else {
+            setRight(parentOfMiddle, leftOfMiddle);
+            if (leftOfMiddle != NIL) {
+                setParent(leftOfMiddle, parentOfMiddle);
+            }
+            left = reBalanceToRoot(parentOfMiddle);
+        }
+        return join(left, middle, right);
+    }
+
+    /**
+     * Same as the join of {@link AVLTree}: the middle node is attached where the inner spine of the taller subtree gets
+     * as low as the other subtree, and then the nodes above it are rebalanced.
+     *
+     * @return root of the joined subtree
+     */
+    private int join(int left, int middle, int right) {
+        int leftHeight = heightOf(left);
+        int rightHeight = heightOf(right);
+        setParent(middle, NIL);
+        if (leftHeight > rightHeight + 1) {
+            int spineNode = left;
+            while (heightOf(right(spineNode)) > rightHeight + 1) {
+                spineNode = right(spineNode);
+            }
+            link(middle, right(spineNode), right);
+            setRight(spineNode, middle);
+            setParent(middle, spineNode);
+        } else if (rightHeight > leftHeight + 1) {
+            int spineNode = right;
+            while (heightOf(left(spineNode)) > leftHeight + 1) {
+                spineNode = left(spineNode);
+            }
+            link(middle, left, left(spineNode));
+            setLeft(spineNode, middle);
+            setParent(middle, spineNode);
+        } else {
+            link(middle, left, right);
+        }
+        return reBalanceToRoot(middle);
+    }
+
+    private void link(int node, int left, int right) {
+        setLeft(node, left);
+        setRight(node, right);
+        if (left != NIL) {
+            setParent(left, node);
+        }
+        if (right != NIL) {
+            setParent(right, node);
+        }
+    }
+
+    private void replaceChild(int parent, int child, int newChild) {
+        if (left(parent) == child) {
+            setLeft(parent, newChild);
+        } else {
+            setRight(parent, newChild);
+        }
+    }
+
+    /**
+     * Rebalances nodes up from the given one until the height of a subtree stays the same or the root is reached.
+     */
+    private void retrace(int node) {
+        while (true) {
+            int previousHeight = height(node);
+            int subtreeRoot = reBalance(node);
+            int parent = parent(subtreeRoot);
+            if (parent == NIL) {
+                root = subtreeRoot;
+                return;
+            }
+            if (height(subtreeRoot) == previousHeight) {
+                return;
+            }
+            node = parent;
+        }
+    }
+
+    private int reBalanceToRoot(int node) {
+        while (true) {
+            int subtreeRoot = reBalance(node);
+            if (parent(subtreeRoot) == NIL) {
+                return subtreeRoot;
+            }
+            node = parent(subtreeRoot);
+        }
+    }
+
+    /**
+     * @return root of the rebalanced subtree
+     */
+    private int reBalance(int node) {
+        int balanceFactor = heightOf(left(node)) - heightOf(right(node));
+        if (balanceFactor > 1) {
+            int left = left(node);
+            if (heightOf(left(left)) < heightOf(right(left))) {
+                rotateLeft(left);
+            }
+            return rotateRight(node);
+        } else if (balanceFactor < -1) {
+            int right = right(node);
+            if (heightOf(right(right)) < heightOf(left(right))) {
+                rotateRight(right);
+            }
+            return rotateLeft(node);
+        }
+        updateHeight(node);
+        return node;
+    }
+
+    private int rotateLeft(int node) {
+        int right = right(node);
+        int parent = parent(node);
+        int rightLeft = left(right);
+        setRight(node, rightLeft);
+        if (rightLeft != NIL) {
+            setParent(rightLeft, node);
+        }
+        setLeft(right, node);
+        setParent(node, right);
+        setParent(right, parent);
+        if (parent != NIL) {
+            replaceChild(parent, node, right);
+        }
+        updateHeight(node);
+        updateHeight(right);
+        return right;
+    }
+
+    private int rotateRight(int node) {
+        int left = left(node);
+        int parent = parent(node);
+        int leftRight = right(left);
+        setLeft(node, leftRight);
+        if (leftRight != NIL) {
+            setParent(leftRight, node);
+        }
+        setRight(left, node);
+        setParent(node, left);
+        setParent(left, parent);
+        if (parent != NIL) {
+            replaceChild(parent, node, left);
+        }
+        updateHeight(node);
+        updateHeight(left);
+        return left;
+    }
+
+    private void updateHeight(int node) {
+        setHeight(node, Math.max(heightOf(left(node)), heightOf(right(node))) + 1);
+    }
+
+    private int heightOf(int node) {
+        return node != NIL ? height(node) : -1;
+    }
+}
@@ -0,0 +1,53 @@
+package org.open_structures.avl_tree;
+
+/**
+ * Counters of a tree that has its stats enabled. Insertions and deletions are recorded between {@link #begin()} and
+ * {@link #end(String, int)}, which also commit a JFR event for the operation.
+ */
+final class StatsRecorder {
+
+    long insertions;
+    long deletions;
+    long comparisons;
+    long nodesVisited;
+    long retraceSteps;
+    long maxRetraceSteps;
+    long singleRotations;
+    long doubleRotations;
+
+    private AVLTreeOperationEvent event;
+    private long comparisonsAtBegin;
+    private long nodesVisitedAtBegin;
+    private long retraceStepsAtBegin;
+    private long rotationsAtBegin;
+
+    void begin() {
+        event = new AVLTreeOperationEvent();
+        event.begin();
+        comparisonsAtBegin = comparisons;
+        nodesVisitedAtBegin = nodesVisited;
+        retraceStepsAtBegin = retraceSteps;
+        rotationsAtBegin = singleRotations + doubleRotations;
+    }
+
+    void end(String operation, int treeSize) {
+        long operationRetraceSteps = retraceSteps - retraceStepsAtBegin;
+        maxRetraceSteps = Math.max(maxRetraceSteps, operationRetraceSteps);
+        AVLTreeOperationEvent event = this.event;
+        this.event = null;
+        if (event != null && event.shouldCommit()) {
+            event.operation = operation;
+            event.comparisons = comparisons - comparisonsAtBegin;
+            event.nodesVisited = nodesVisited - nodesVisitedAtBegin;
+            event.retraceSteps = operationRetraceSteps;
+            event.rotations = singleRotations + doubleRotations - rotationsAtBegin;
+            event.treeSize = treeSize;
+            event.commit();
+        }
+    }
+
+    AVLTreeStats snapshot(int size, int height) {
+        return new AVLTreeStats(insertions, deletions, comparisons, nodesVisited, retraceSteps, maxRetraceSteps, singleRotations,
+                doubleRotations, size, height);
+    }
+}
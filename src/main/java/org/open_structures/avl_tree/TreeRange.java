@@ -0,0 +1,235 @@
+package org.open_structures.avl_tree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Live view of the nodes of a tree that fall within bounds, seen in ascending or descending order. Navigation methods
+ * answer in "view order": for a descending view the first node is the greatest one and the ceiling is the next node
+ * going down. Null bound means there is no bound on that side, which works since the tree doesn't allow null values.
+ * Null values passed to the view are rejected with {@link NullPointerException}, as {@link java.util.Collection} expects.
+ */
+final class TreeRange<T> {
+
+    private final AVLTree<T> tree;
+    private final T low, high; // absolute bounds, low is never greater than high
+    private final boolean lowInclusive, highInclusive;
+    private final boolean descending;
+
+    TreeRange(AVLTree<T> tree) {
+        this(tree, null, false, null, false, false);
+    }
+
+    private TreeRange(AVLTree<T> tree, T low, boolean lowInclusive, T high, boolean highInclusive, boolean descending) {
+        this.tree = tree;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.high = high;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+    }
+
+    AVLTree<T> tree() {
+        return tree;
+    }
+
+    Comparator<? super T> comparator() {
+        return descending ? tree.getComparator().reversed() : tree.getComparator();
+    }
+
+    boolean inRange(T value) {
+        Objects.requireNonNull(value);
+        return !tooLow(value) && !tooHigh(value);
+    }
+
+    AVLNode<T> find(T value) {
+        return inRange(value) ? tree.find(value) : null;
+    }
+
+    AVLNode<T> first() {
+        return descending ? absoluteHighest() : absoluteLowest();
+    }
+
+    AVLNode<T> last() {
+        return descending ? absoluteLowest() : absoluteHighest();
+    }
+
+    AVLNode<T> ceiling(T value) {
+        return descending ? absoluteFloor(value, true) : absoluteCeiling(value, true);
+    }
+
+    AVLNode<T> higher(T value) {
+        return descending ? absoluteFloor(value, false) : absoluteCeiling(value, false);
+    }
+
+    AVLNode<T> floor(T value) {
+        return descending ? absoluteCeiling(value, true) : absoluteFloor(value, true);
+    }
+
+    AVLNode<T> lower(T value) {
+        return descending ? absoluteCeiling(value, false) : absoluteFloor(value, false);
+    }
+
+    /**
+     * Counts the nodes using ranks of the bounds, so it takes O(log n).
+     */
+    int size() {
+        if (low == null && high == null) {
+            return tree.size();
+        }
+        int belowRange = low == null ? 0 : tree.rank(low) + (!lowInclusive && tree.contains(low) ? 1 : 0);
+        int upToRangeEnd = high == null ? tree.size() : tree.rank(high) + (highInclusive && tree.contains(high) ? 1 : 0);
+        return Math.max(0, upToRangeEnd - belowRange);
+    }
+
+    boolean isEmpty() {
+        return first() == null;
+    }
+
+    void clear() {
+        if (low == null && high == null) {
+            tree.clear();
+        } else {
+            for (Iterator<AVLNode<T>> iterator = nodeIterator(); iterator.hasNext(); ) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    TreeRange<T> descendingRange() {
+        return new TreeRange<>(tree, low, lowInclusive, high, highInclusive, !descending);
+    }
+
+    /**
+     * @param from bound in view order, null if the range keeps its current bound
+     * @param to   bound in view order, null if the range keeps its current bound
+     */
+    TreeRange<T> subRange(T from, boolean fromInclusive, T to, boolean toInclusive) {
+        T newLow = descending ? to : from;
+        boolean newLowInclusive = descending ? toInclusive : fromInclusive;
+        T newHigh = descending ? from : to;
+        boolean newHighInclusive = descending ? fromInclusive : toInclusive;
+        if (newLow != null && newHigh != null && tree.getComparator().compare(newLow, newHigh) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        if (newLow == null) {
+            newLow = low;
+            newLowInclusive = lowInclusive;
+        } else {
+            checkBound(newLow, newLowInclusive);
+        }
+        if (newHigh == null) {
+            newHigh = high;
+            newHighInclusive = highInclusive;
+        } else {
+            checkBound(newHigh, newHighInclusive);
+        }
+        return new TreeRange<>(tree, newLow, newLowInclusive, newHigh, newHighInclusive, descending);
+    }
+
+    /**
+     * @return iterator over the nodes in view order that deletes nodes from the tree on {@link Iterator#remove()}
+     */
+    Iterator<AVLNode<T>> nodeIterator() {
+        return new Iterator<>() {
+            private AVLNode<T> next = first();
+            private AVLNode<T> lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public AVLNode<T> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next;
+                AVLNode<T> following = descending ? TreeUtils.predecessor(next) : TreeUtils.successor(next);
+                next = following != null && (descending ? !tooLow(following.getValue()) : !tooHigh(following.getValue())) ? following : null;
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                tree.delete(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+
+    // inclusive bound has to be in the range, exclusive one may be equal to an exclusive bound of the range
+    private void checkBound(T bound, boolean inclusive) {
+        boolean withinRange;
+        if (inclusive) {
+            withinRange = inRange(bound);
+        } else {
+            Comparator<? super T> comparator = tree.getComparator();
+            withinRange = (low == null || comparator.compare(bound, low) >= 0) && (high == null || comparator.compare(bound, high) <= 0);
+        }
+        if (!withinRange) {
+            throw new IllegalArgumentException(bound + " is out of range");
+        }
+    }
+
+    private boolean tooLow(T value) {
+        if (low == null) {
+            return false;
+        }
+        int c = tree.getComparator().compare(value, low);
+        return c < 0 || (c == 0 && !lowInclusive);
+    }
+
+    private boolean tooHigh(T value) {
+        if (high == null) {
+            return false;
+        }
+        int c = tree.getComparator().compare(value, high);
+        return c > 0 || (c == 0 && !highInclusive);
+    }
+
+    private AVLNode<T> absoluteLowest() {
+        AVLNode<T> lowest;
+        if (low == null) {
+            lowest = tree.isEmpty() ? null : TreeUtils.getLeftmost(tree.getRoot());
+        } else {
+            lowest = lowInclusive ? tree.ceiling(low) : tree.higher(low);
+        }
+        return lowest == null || tooHigh(lowest.getValue()) ? null : lowest;
+    }
+
+    private AVLNode<T> absoluteHighest() {
+        AVLNode<T> highest;
+        if (high == null) {
+            highest = tree.isEmpty() ? null : TreeUtils.getRightmost(tree.getRoot());
+        } else {
+            highest = highInclusive ? tree.floor(high) : tree.lower(high);
+        }
+        return highest == null || tooLow(highest.getValue()) ? null : highest;
+    }
+
+    private AVLNode<T> absoluteCeiling(T value, boolean inclusive) {
+        Objects.requireNonNull(value);
+        if (tooLow(value)) {
+            return absoluteLowest();
+        }
+        AVLNode<T> ceiling = inclusive ? tree.ceiling(value) : tree.higher(value);
+        return ceiling == null || tooHigh(ceiling.getValue()) ? null : ceiling;
+    }
+
+    private AVLNode<T> absoluteFloor(T value, boolean inclusive) {
+        Objects.requireNonNull(value);
+        if (tooHigh(value)) {
+            return absoluteHighest();
+        }
+        AVLNode<T> floor = inclusive ? tree.floor(value) : tree.lower(value);
+        return floor == null || tooLow(floor.getValue()) ? null : floor;
+    }
+}
@@ -1,6 +1,10 @@
 package org.open_structures.avl_tree;
 
-import java.util.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public final class TreeUtils {
 
@@ -12,7 +16,10 @@ public final class TreeUtils {
             throw new IllegalArgumentException();
         }
 
-        return node.getRight() != null ? getRightmost(node.getRight()) : node;
+        while (node.getRight() != null) {
+            node = node.getRight();
+        }
+        return node;
     }
 
     public static <T> AVLNode<T> getLeftmost(AVLNode<T> node) {
@@ -20,7 +27,50 @@ public final class TreeUtils {
             throw new IllegalArgumentException();
         }
 
-        return node.getLeft() != null ? getLeftmost(node.getLeft()) : node;
+        while (node.getLeft() != null) {
+            node = node.getLeft();
+        }
+        return node;
+    }
+
+    /**
+     * Finds the next node in ascending order by following child and parent links, so it takes amortized O(1) when
+     * walking through the whole tree.
+     *
+     * @return null if the node holds the greatest value of the tree
+     */
+    public static <T> AVLNode<T> successor(AVLNode<T> node) {
+        if (node == null) {
+            throw new IllegalArgumentException();
+        }
+
+        if (node.getRight() != null) {
+            return getLeftmost(node.getRight());
+        }
+        while (isRightChild(node)) {
+            node = node.getParent();
+        }
+        return node.getParent();
+    }
+
+    /**
+     * Finds the previous node in ascending order by following child and parent links, so it takes amortized O(1) when
+     * walking through the whole tree.
+     *
+     * @return null if the node holds the smallest value of the tree
+     */
+    public static <T> AVLNode<T> predecessor(AVLNode<T> node) {
+        if (node == null) {
+            throw new IllegalArgumentException();
+        }
+
+        if (node.getLeft() != null) {
+            return getRightmost(node.getLeft());
+        }
+        while (isLeftChild(node)) {
+            node = node.getParent();
+        }
+        return node.getParent();
     }
 
     public static <T> boolean isLeftChild(AVLNode<T> node) {
@@ -47,86 +97,148 @@ public final class TreeUtils {
         return node.getLeft() == null && node.getRight() == null;
     }
 
+    /**
+     * Renders the tree level by level, see {@link #print(AVLTree, Appendable, int)}.
+     */
     public static <T> String print(AVLTree<T> tree) {
+        return print(tree, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Renders the top levels of the tree, see {@link #print(AVLTree, Appendable, int)}.
+     */
+    public static <T> String print(AVLTree<T> tree, int maxDepth) {
+        StringBuilder result = new StringBuilder();
+        try {
+            print(tree, result, maxDepth);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder doesn't throw it
+        }
+        return result.toString();
+    }
+
+    /**
+     * Renders the tree into the appendable one level at a time, every level is a row of values preceded by a row of
+     * edges leading to them. Values are laid out in ascending order, each one taking as many columns as its
+     * {@link Object#toString()}. Rendering takes O(n) time and keeps a few arrays of O(n) next to the row being written.
+     *
+     * @param maxDepth number of levels to render, the nodes below are left out as if there were none
+     */
+    public static <T> void print(AVLTree<T> tree, Appendable out, int maxDepth) throws IOException {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth has to be positive, got " + maxDepth);
+        }
         if (tree.isEmpty()) {
-            return "";
-        }
-
-        Queue<AVLNode<T>> bfsQueue = new LinkedList<>();
-        Map<AVLNode<T>, Integer> positionsMap = new HashMap<>();
-        Map<AVLNode<T>, Integer> lvlMap = new HashMap<>();
-
-        int currentLvl = tree.getHeight();
-        AVLNode<T> root = tree.getRoot();
-        bfsQueue.add(root);
-        lvlMap.put(root, currentLvl);
-        List<String> rows = new LinkedList<>();
-        StringBuilder currentValuesRow = new StringBuilder();
-        StringBuilder currentEdgesRow = new StringBuilder();
-        while (!bfsQueue.isEmpty()) {
-            AVLNode<T> n = bfsQueue.poll();
-            int lvl = lvlMap.get(n);
-            if (lvl != currentLvl) {
-                // starting new row
-                if (!currentEdgesRow.isEmpty()) {
-                    rows.add(currentEdgesRow.toString());
-                }
-                rows.add(currentValuesRow.toString());
-                currentValuesRow = new StringBuilder();
-                currentEdgesRow = new StringBuilder();
-                currentLvl = lvl;
-            }
-            if (n.getParent() == null) {
-                // root node
-                int leftChildWidth = n.getLeft() != null ? width(n.getLeft()) : 0;
-                positionsMap.put(n, leftChildWidth);
-                currentValuesRow.append(" ".repeat(leftChildWidth)).append(n.getValue());
+            return;
+        }
+
+        // nodes in breadth-first order, so every level is a contiguous range and parents come before their children
+        LevelOrder<T> nodes = new LevelOrder<>(tree.getRoot(), maxDepth);
+        int n = nodes.size;
+
+        // subtree widths in one pass from the bottom up, every node adds its subtree to the side of its parent
+        int[] leftWidths = new int[n];
+        int[] rightWidths = new int[n];
+        for (int i = n - 1; i > 0; i--) {
+            int width = leftWidths[i] + nodes.labels[i].length() + rightWidths[i];
+            int parent = nodes.parents[i];
+            if (nodes.isRightChild[i]) {
+                rightWidths[parent] += width;
             } else {
-                // parent is already printed
-                int parentPos = positionsMap.get(n.getParent());
-                int thisNodePos;
-                if (isRightChild(n)) {
-                    thisNodePos = parentPos + n.getParent().getValue().toString().length() + (n.getLeft() != null ? width(n.getLeft()) : 0);
-                    int spacesToAddForEdge = parentPos + n.getParent().getValue().toString().length() - currentEdgesRow.length();
-                    currentEdgesRow.append(" ".repeat(spacesToAddForEdge)).append("\\");
-                } else {
-                    thisNodePos = parentPos - n.getValue().toString().length() - (n.getRight() != null ? width(n.getRight()) : 0);
-                    int spacesToAddForEdge = parentPos - 1 - currentEdgesRow.length();
-                    currentEdgesRow.append(" ".repeat(spacesToAddForEdge)).append("/");
-                }
-                positionsMap.put(n, thisNodePos);
-                int spacesToAddForValue = thisNodePos - currentValuesRow.length();
-                currentValuesRow.append(" ".repeat(spacesToAddForValue)).append(n.getValue());
+                leftWidths[parent] += width;
             }
+        }
+
+        // a node starts right after everything that precedes it in ascending order
+        int[] positions = new int[n];
+        positions[0] = leftWidths[0];
+        for (int i = 1; i < n; i++) {
+            int parent = nodes.parents[i];
+            positions[i] = nodes.isRightChild[i]
+                    ? positions[parent] + nodes.labels[parent].length() + leftWidths[i]
+                    : positions[parent] - nodes.labels[i].length() - rightWidths[i];
+        }
 
-            if (n.getLeft() != null) {
-                bfsQueue.add(n.getLeft());
-                lvlMap.put(n.getLeft(), lvl - 1);
+        StringBuilder edgesRow = new StringBuilder();
+        StringBuilder valuesRow = new StringBuilder();
+        int levelStart = 0;
+        while (levelStart < n) {
+            int levelEnd = levelStart + 1;
+            while (levelEnd < n && nodes.depths[levelEnd] == nodes.depths[levelStart]) {
+                levelEnd++;
             }
-            if (n.getRight() != null) {
-                bfsQueue.add(n.getRight());
-                lvlMap.put(n.getRight(), lvl - 1);
+            edgesRow.setLength(0);
+            valuesRow.setLength(0);
+            for (int i = levelStart; i < levelEnd; i++) {
+                if (i > 0) {
+                    int parent = nodes.parents[i];
+                    if (nodes.isRightChild[i]) {
+                        pad(edgesRow, positions[parent] + nodes.labels[parent].length()).append('\\');
+                    } else {
+                        pad(edgesRow, positions[parent] - 1).append('/');
+                    }
+                }
+                pad(valuesRow, positions[i]).append(nodes.labels[i]);
             }
+            if (levelStart > 0) {
+                out.append('\n').append(edgesRow).append('\n');
+            }
+            out.append(valuesRow);
+            levelStart = levelEnd;
         }
-        StringBuffer result = new StringBuffer();
-        rows.forEach(s -> result.append(s).append("\n"));
-        if (!currentEdgesRow.isEmpty()) {
-            result.append(currentEdgesRow).append("\n");
-        }
-        result.append(currentValuesRow);
-
+    }
 
-        return result.toString();
+    private static StringBuilder pad(StringBuilder row, int column) {
+        for (int i = row.length(); i < column; i++) {
+            row.append(' ');
+        }
+        return row;
     }
 
-    private static <T> int width(AVLNode<T> node) {
-        int w = node.getValue().toString().length();
-        if (node.getLeft() != null) {
-            w += width(node.getLeft());
+    /**
+     * Nodes of the top levels of a tree in breadth-first order along with what rendering needs to know about them.
+     */
+    private static final class LevelOrder<T> {
+        private String[] labels = new String[16];
+        private int[] parents = new int[16];
+        private int[] depths = new int[16];
+        private boolean[] isRightChild = new boolean[16];
+        private int size;
+
+        private LevelOrder(AVLNode<T> root, int maxDepth) {
+            List<AVLNode<T>> queue = new ArrayList<>();
+            queue.add(root);
+            add(root, -1, 0, false);
+            for (int head = 0; head < queue.size(); head++) {
+                AVLNode<T> node = queue.get(head);
+                int depth = depths[head] + 1;
+                if (depth == maxDepth) {
+                    continue;
+                }
+                if (node.getLeft() != null) {
+                    queue.add(node.getLeft());
+                    add(node.getLeft(), head, depth, false);
+                }
+                if (node.getRight() != null) {
+                    queue.add(node.getRight());
+                    add(node.getRight(), head, depth, true);
+                }
+            }
         }
-        if (node.getRight() != null) {
-            w += width(node.getRight());
+
+        private void add(AVLNode<T> node, int parent, int depth, boolean rightChild) {
+            if (size == labels.length) {
+                int capacity = size * 2;
+                labels = Arrays.copyOf(labels, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                depths = Arrays.copyOf(depths, capacity);
+                isRightChild = Arrays.copyOf(isRightChild, capacity);
+            }
+            labels[size] = String.valueOf(node.getValue());
+            parents[size] = parent;
+            depths[size] = depth;
+            isRightChild[size] = rightChild;
+            size++;
         }
-        return w;
     }
 }
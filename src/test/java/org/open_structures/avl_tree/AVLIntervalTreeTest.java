@@ -0,0 +1,144 @@
+package org.open_structures.avl_tree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AVLIntervalTreeTest {
+
+    @Test
+    public void shouldFindIntervalsContainingPoint() {
+        // given
+        AVLIntervalTree<Integer, Reservation> tree = new AVLIntervalTree<>(Integer::compareTo);
+        Reservation first = new Reservation("first", 0, 10);
+        Reservation second = new Reservation("second", 5, 15);
+        Reservation third = new Reservation("third", 10, 20);
+        tree.insert(third);
+        tree.insert(first);
+        tree.insert(second);
+
+        // when and then
+        assertThat(tree.overlapping(7)).containsExactly(first, second);
+        assertThat(tree.overlapping(10)).containsExactly(second, third);
+        assertThat(tree.overlapping(20)).isEmpty();
+    }
+
+    @Test
+    public void shouldFindOverlappingIntervals() {
+        // given
+        AVLIntervalTree<Integer, Reservation> tree = new AVLIntervalTree<>(Integer::compareTo);
+        Reservation morning = new Reservation("morning", 8, 12);
+        Reservation lunch = new Reservation("lunch", 12, 13);
+        Reservation sameTimeLunch = new Reservation("same time lunch", 12, 13);
+        tree.insert(morning);
+        tree.insert(lunch);
+        tree.insert(sameTimeLunch);
+
+        // when and then
+        assertThat(tree.overlapping(new Reservation("query", 11, 13))).containsExactlyInAnyOrder(morning, lunch, sameTimeLunch);
+        assertThat(tree.overlapping(new Reservation("query", 13, 14))).isEmpty();
+        assertThat(tree.overlapsAny(new Reservation("query", 6, 8))).isFalse();
+        assertThat(tree.overlapsAny(new Reservation("query", 6, 9))).isTrue();
+    }
+
+    @Test
+    public void shouldMatchLinearScan() {
+        // given
+        AVLIntervalTree<Integer, Reservation> tree = new AVLIntervalTree<>(Integer::compareTo);
+        List<Reservation> reservations = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            int start = random.nextInt(10_000);
+            Reservation reservation = new Reservation("r" + i, start, start + 1 + random.nextInt(200));
+            tree.insert(reservation);
+            reservations.add(reservation);
+        }
+        for (int i = 0; i < 2000; i += 3) {
+            tree.delete(reservations.get(i));
+        }
+        for (int i = 0; i < 2000; i += 3) {
+            reservations.set(i, null);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            // when
+            int start = random.nextInt(10_000);
+            Reservation query = new Reservation("query", start, start + 1 + random.nextInt(50));
+            List<Reservation> overlapping = tree.overlapping(query);
+
+            // then
+            List<Reservation> expected = new ArrayList<>();
+            for (Reservation reservation : reservations) {
+                if (reservation != null && reservation.start < query.end && query.start < reservation.end) {
+                    expected.add(reservation);
+                }
+            }
+            assertThat(overlapping).containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(tree.overlapsAny(query)).isEqualTo(!expected.isEmpty());
+        }
+    }
+
+    @Test
+    public void shouldReportOverlappingIntervalsOrderedByStart() {
+        // given
+        AVLIntervalTree<Integer, Reservation> tree = new AVLIntervalTree<>(Integer::compareTo);
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Reservation reservation = new Reservation("r" + i, i, i + (i % 10 == 0 ? 100 : 2));
+            tree.insert(reservation);
+            reservations.add(reservation);
+        }
+
+        // when
+        List<Reservation> overlapping = tree.overlapping(new Reservation("query", 500, 600));
+        List<Reservation> containingPoint = tree.overlapping(550);
+
+        // then
+        List<Reservation> expected = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            if (reservation.start < 600 && reservation.end > 500) {
+                expected.add(reservation);
+            }
+        }
+        assertThat(overlapping).containsExactlyElementsOf(expected);
+        assertThat(containingPoint).containsExactly(reservations.get(460), reservations.get(470), reservations.get(480),
+                reservations.get(490), reservations.get(500), reservations.get(510), reservations.get(520),
+                reservations.get(530), reservations.get(540), reservations.get(549), reservations.get(550));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfIntervalIsEmpty() {
+        // when
+        new AVLIntervalTree<Integer, Reservation>(Integer::compareTo).insert(new Reservation("empty", 5, 5));
+    }
+
+    private static final class Reservation implements Interval<Integer> {
+        private final String name;
+        private final int start, end;
+
+        private Reservation(String name, int start, int end) {
+            this.name = name;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Integer getStart() {
+            return start;
+        }
+
+        @Override
+        public Integer getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
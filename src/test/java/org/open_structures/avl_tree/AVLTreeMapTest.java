@@ -0,0 +1,98 @@
+package org.open_structures.avl_tree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.NavigableMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AVLTreeMapTest {
+
+    private AVLTreeMap<Integer, String> map;
+
+    @Before
+    public void setUp() {
+        map = new AVLTreeMap<>(Integer::compareTo);
+        for (int i = 1; i <= 5; i++) {
+            map.put(i, "v" + i);
+        }
+    }
+
+    @Test
+    public void shouldPutGetAndRemove() {
+        // when and then
+        assertThat(map.put(3, "three")).isEqualTo("v3");
+        assertThat(map.get(3)).isEqualTo("three");
+        assertThat(map.put(6, "v6")).isNull();
+        assertThat(map.size()).isEqualTo(6);
+        assertThat(map.remove(1)).isEqualTo("v1");
+        assertThat(map.remove(1)).isNull();
+        assertThat(map.containsKey(1)).isFalse();
+        assertThat(map.containsValue("v6")).isTrue();
+    }
+
+    @Test
+    public void shouldNavigate() {
+        // when and then
+        assertThat(map.firstKey()).isEqualTo(1);
+        assertThat(map.lastEntry()).isEqualTo(Map.entry(5, "v5"));
+        assertThat(map.floorKey(0)).isNull();
+        assertThat(map.ceilingEntry(0)).isEqualTo(Map.entry(1, "v1"));
+        assertThat(map.higherKey(2)).isEqualTo(3);
+        assertThat(map.lowerEntry(2)).isEqualTo(Map.entry(1, "v1"));
+    }
+
+    @Test
+    public void shouldPollFirstAndLastEntries() {
+        // when and then
+        assertThat(map.pollFirstEntry()).isEqualTo(Map.entry(1, "v1"));
+        assertThat(map.pollLastEntry()).isEqualTo(Map.entry(5, "v5"));
+        assertThat(map.keySet()).containsExactly(2, 3, 4);
+    }
+
+    @Test
+    public void shouldWriteThroughEntries() {
+        // when
+        for (Map.Entry<Integer, String> entry : map.entrySet()) {
+            entry.setValue(entry.getValue().toUpperCase());
+        }
+
+        // then
+        assertThat(map.values()).containsExactly("V1", "V2", "V3", "V4", "V5");
+    }
+
+    @Test
+    public void shouldProvideLiveViews() {
+        // given
+        NavigableMap<Integer, String> subMap = map.subMap(2, true, 4, true);
+        NavigableMap<Integer, String> descending = map.descendingMap();
+
+        // when
+        subMap.remove(3);
+        map.put(6, "v6");
+
+        // then
+        assertThat(subMap.keySet()).containsExactly(2, 4);
+        assertThat(subMap.size()).isEqualTo(2);
+        assertThat(descending.keySet()).containsExactly(6, 5, 4, 2, 1);
+        assertThat(descending.firstKey()).isEqualTo(6);
+        assertThat(map.headMap(4).keySet()).containsExactly(1, 2);
+        assertThat(map.tailMap(4, false).keySet()).containsExactly(5, 6);
+    }
+
+    @Test
+    public void shouldBeEqualToOtherMapsWithSameEntries() {
+        // when and then
+        assertThat(map).isEqualTo(Map.of(1, "v1", 2, "v2", 3, "v3", 4, "v4", 5, "v5"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowAdditionThroughKeySet() {
+        // when
+        map.keySet().add(10);
+
+        // then throw exception
+    }
+}
@@ -0,0 +1,112 @@
+package org.open_structures.avl_tree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.NavigableSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AVLTreeSetTest {
+
+    private AVLTreeSet<Integer> set;
+
+    @Before
+    public void setUp() {
+        set = new AVLTreeSet<>(Integer::compareTo);
+        for (int i = 0; i < 10; i++) {
+            set.add(i * 10);
+        }
+    }
+
+    @Test
+    public void shouldAddAndRemove() {
+        // when and then
+        assertThat(set.add(5)).isTrue();
+        assertThat(set.add(5)).isFalse();
+        assertThat(set.remove(5)).isTrue();
+        assertThat(set.remove(5)).isFalse();
+        assertThat(set.size()).isEqualTo(10);
+        assertThat(set.contains(90)).isTrue();
+        assertThat(set.contains(95)).isFalse();
+    }
+
+    @Test
+    public void shouldNavigate() {
+        // when and then
+        assertThat(set.floor(25)).isEqualTo(20);
+        assertThat(set.floor(20)).isEqualTo(20);
+        assertThat(set.lower(20)).isEqualTo(10);
+        assertThat(set.ceiling(25)).isEqualTo(30);
+        assertThat(set.ceiling(30)).isEqualTo(30);
+        assertThat(set.higher(30)).isEqualTo(40);
+        assertThat(set.lower(0)).isNull();
+        assertThat(set.higher(90)).isNull();
+        assertThat(set.first()).isEqualTo(0);
+        assertThat(set.last()).isEqualTo(90);
+    }
+
+    @Test
+    public void shouldPollFirstAndLast() {
+        // when and then
+        assertThat(set.pollFirst()).isEqualTo(0);
+        assertThat(set.pollLast()).isEqualTo(90);
+        assertThat(set).containsExactly(10, 20, 30, 40, 50, 60, 70, 80);
+    }
+
+    @Test
+    public void shouldProvideLiveSubSet() {
+        // given
+        NavigableSet<Integer> subSet = set.subSet(20, true, 50, false);
+
+        // when
+        set.add(25);
+        subSet.remove(30);
+
+        // then
+        assertThat(subSet).containsExactly(20, 25, 40);
+        assertThat(subSet.size()).isEqualTo(3);
+        assertThat(set.contains(30)).isFalse();
+        assertThat(subSet.first()).isEqualTo(20);
+        assertThat(subSet.last()).isEqualTo(40);
+        assertThat(subSet.ceiling(45)).isNull();
+    }
+
+    @Test
+    public void shouldProvideHeadAndTailSets() {
+        // when and then
+        assertThat(set.headSet(30)).containsExactly(0, 10, 20);
+        assertThat(set.headSet(30, true)).containsExactly(0, 10, 20, 30);
+        assertThat(set.tailSet(70)).containsExactly(70, 80, 90);
+        assertThat(set.tailSet(70, false)).containsExactly(80, 90);
+    }
+
+    @Test
+    public void shouldProvideDescendingSet() {
+        // given
+        NavigableSet<Integer> descending = set.descendingSet();
+
+        // when and then
+        assertThat(descending.first()).isEqualTo(90);
+        assertThat(descending.higher(50)).isEqualTo(40);
+        assertThat(descending.headSet(60)).containsExactly(90, 80, 70);
+        assertThat(descending.descendingSet()).containsExactly(0, 10, 20, 30, 40, 50, 60, 70, 80, 90);
+    }
+
+    @Test
+    public void shouldClearSubSetOnly() {
+        // when
+        set.subSet(20, 60).clear();
+
+        // then
+        assertThat(set).containsExactly(0, 10, 60, 70, 80, 90);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfAttemptingToAddOutOfRange() {
+        // when
+        set.headSet(50).add(60);
+
+        // then throw exception
+    }
+}
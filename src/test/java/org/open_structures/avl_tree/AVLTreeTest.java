@@ -4,7 +4,20 @@ import org.assertj.core.api.Assertions;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
 
 import static java.lang.Math.max;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -381,6 +394,130 @@ public class AVLTreeTest {
         Assertions.assertThat(joined.getRoot().getRight().getRight().getValue()).isEqualTo(6);
     }
 
+    @Test
+    public void shouldLeaveOneOfJoinedTreesEmpty() {
+        // given
+        AVLTree<Integer> left = new AVLTree<>(comparator);
+        left.insert(1);
+        left.insert(2);
+        AVLTree<Integer> right = new AVLTree<>(comparator);
+        right.insert(3);
+        right.insert(4);
+        right.insert(5);
+
+        // when
+        AVLTree<Integer> joined = AVLTree.join(left, right);
+
+        // then
+        assertThat(joined).isSameAs(right);
+        assertThat(left.isEmpty()).isTrue();
+        assertThat(left.contains(1)).isFalse();
+        for (int i = 1; i <= 5; i++) {
+            assertThat(joined.contains(i)).isTrue();
+        }
+        assertBalanced(joined.getRoot());
+    }
+
+    @Test
+    public void shouldJoinIndexFreeTreesOfDifferentHeights() {
+        // given
+        AVLTree<Integer> left = AVLTree.indexFree(comparator);
+        for (int i = 0; i < 100; i++) {
+            left.insert(i);
+        }
+        AVLTree<Integer> right = AVLTree.indexFree(comparator);
+        right.insert(100);
+        right.insert(101);
+
+        // when
+        AVLTree<Integer> joined = AVLTree.join(left, right);
+
+        // then
+        assertBalanced(joined.getRoot());
+        for (int i = 0; i < 102; i++) {
+            assertThat(joined.contains(i)).isTrue();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfAttemptingToJoinOverlappingTrees() {
+        // given
+        AVLTree<Integer> left = new AVLTree<>(comparator);
+        left.insert(1);
+        left.insert(5);
+        AVLTree<Integer> right = new AVLTree<>(comparator);
+        right.insert(3);
+
+        // when
+        AVLTree.join(left, right);
+
+        // then throw exception
+    }
+
+    @Test
+    public void shouldSplit() {
+        // given
+        for (int i = 1; i <= 10; i++) {
+            tree.insert(i);
+        }
+
+        // when
+        AVLTree<Integer> greaterOrEqual = tree.split(4);
+
+        // then
+        assertBalanced(tree.getRoot());
+        assertBalanced(greaterOrEqual.getRoot());
+        for (int i = 1; i <= 10; i++) {
+            assertThat(tree.contains(i)).isEqualTo(i < 4);
+            assertThat(greaterOrEqual.contains(i)).isEqualTo(i >= 4);
+        }
+        Assertions.assertThat(TreeUtils.getRightmost(tree.getRoot()).getValue()).isEqualTo(3);
+        Assertions.assertThat(TreeUtils.getLeftmost(greaterOrEqual.getRoot()).getValue()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldSplitByAbsentKey() {
+        // given
+        AVLTree<Integer> indexFreeTree = AVLTree.indexFree(comparator);
+        for (int i = 0; i < 20; i += 2) {
+            indexFreeTree.insert(i);
+        }
+
+        // when
+        AVLTree<Integer> greaterOrEqual = indexFreeTree.split(7);
+
+        // then
+        assertBalanced(indexFreeTree.getRoot());
+        assertBalanced(greaterOrEqual.getRoot());
+        Assertions.assertThat(TreeUtils.getLeftmost(indexFreeTree.getRoot()).getValue()).isEqualTo(0);
+        Assertions.assertThat(TreeUtils.getRightmost(indexFreeTree.getRoot()).getValue()).isEqualTo(6);
+        Assertions.assertThat(TreeUtils.getLeftmost(greaterOrEqual.getRoot()).getValue()).isEqualTo(8);
+        Assertions.assertThat(TreeUtils.getRightmost(greaterOrEqual.getRoot()).getValue()).isEqualTo(18);
+    }
+
+    @Test
+    public void shouldSplitAtTheEdges() {
+        // given
+        tree.insert(1);
+        tree.insert(2);
+
+        // when
+        AVLTree<Integer> everything = tree.split(0);
+
+        // then
+        assertThat(tree.isEmpty()).isTrue();
+        assertThat(everything.contains(1)).isTrue();
+        assertThat(everything.contains(2)).isTrue();
+
+        // and when
+        AVLTree<Integer> nothing = everything.split(3);
+
+        // then
+        assertThat(nothing.isEmpty()).isTrue();
+        assertThat(everything.contains(1)).isTrue();
+        assertThat(everything.contains(2)).isTrue();
+    }
+
     // integration test from https://www.youtube.com/watch?v=FNeL18KsWPc&t=2162s
     @Test
     public void shouldBalanceTheTree() {
@@ -448,9 +585,989 @@ public class AVLTreeTest {
         assertThat(tree.getHeight()).isEqualTo(4);
     }
 
-    private static int height(AVLNode<Integer> node) {
-        int leftChildHeight = node.getLeft() != null ? height(node.getLeft()) : 0;
-        int rightChildHeight = node.getRight() != null ? height(node.getRight()) : 0;
-        return max(leftChildHeight, rightChildHeight) + 1;
+    @Test
+    public void shouldDeleteNodeWithTwoChildrenWhoseSuccessorHasRightChild() {
+        // given
+        tree.insert(5);
+        tree.insert(2);
+        tree.insert(10);
+        tree.insert(1);
+        tree.insert(8);
+        tree.insert(12);
+        tree.insert(9);
+
+        // when
+        tree.delete(5);
+
+        // then
+        Assertions.assertThat(tree.getRoot().getValue()).isEqualTo(8);
+        Assertions.assertThat(tree.getRoot().getRight().getValue()).isEqualTo(10);
+        Assertions.assertThat(tree.getRoot().getRight().getLeft().getValue()).isEqualTo(9);
+        Assertions.assertThat(tree.getRoot().getRight().getLeft().getParent().getValue()).isEqualTo(10);
+        Assertions.assertThat(tree.getRoot().getRight().getRight().getParent().getValue()).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldFindValue() {
+        // given
+        tree.insert(1);
+        AVLNode<Integer> node = tree.insert(2);
+        tree.insert(3);
+
+        // when and then
+        assertThat(tree.find(2)).isSameAs(node);
+        assertThat(tree.find(4)).isNull();
+        assertThat(tree.contains(3)).isTrue();
+        assertThat(tree.contains(0)).isFalse();
+    }
+
+    @Test
+    public void shouldInsertFindAndDeleteInIndexFreeTree() {
+        // given
+        AVLTree<Integer> indexFreeTree = AVLTree.indexFree(comparator);
+        for (int i = 1; i <= 7; i++) {
+            indexFreeTree.insert(i);
+        }
+
+        // when
+        indexFreeTree.delete(4);
+
+        // then
+        assertThat(indexFreeTree.isIndexed()).isFalse();
+        assertThat(indexFreeTree.contains(4)).isFalse();
+        assertThat(indexFreeTree.find(5).getValue()).isEqualTo(5);
+        Assertions.assertThat(indexFreeTree.getRoot().getValue()).isEqualTo(5);
+        assertThat(indexFreeTree.getHeight()).isEqualTo(3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfAttemptingToInsertValueEqualByComparatorIntoIndexFreeTree() {
+        // given
+        AVLTree<String> indexFreeTree = AVLTree.indexFree(String.CASE_INSENSITIVE_ORDER);
+        indexFreeTree.insert("a");
+
+        // when
+        indexFreeTree.insert("A");
+
+        // then throw exception
+    }
+
+    @Test
+    public void shouldDeleteByNode() {
+        // given
+        tree.insert(1);
+        AVLNode<Integer> node = tree.insert(2);
+        tree.insert(3);
+
+        // when
+        tree.delete(node);
+
+        // then
+        assertThat(tree.contains(2)).isFalse();
+        Assertions.assertThat(tree.getRoot().getValue()).isEqualTo(3);
+        Assertions.assertThat(tree.getRoot().getLeft().getValue()).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfAttemptingToDeleteRootOfAnotherTree() {
+        // given
+        AVLTree<Integer> anotherTree = new AVLTree<>(comparator);
+        AVLNode<Integer> node = anotherTree.insert(1);
+        tree.insert(1);
+
+        // when
+        tree.delete(node);
+
+        // then throw exception
+    }
+
+    @Test
+    public void shouldThrowExceptionIfAttemptingToDeleteInnerNodeOfAnotherTree() {
+        // given
+        AVLTree<Integer> anotherTree = new AVLTree<>(comparator);
+        IntStream.range(0, 7).forEach(anotherTree::insert);
+        IntStream.range(0, 7).forEach(tree::insert);
+        AVLNode<Integer> node = anotherTree.find(1);
+
+        // when
+        Throwable thrown = null;
+        try {
+            tree.delete(node);
+        } catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+
+        // then
+        assertThat(thrown).isNotNull();
+        assertThat(tree.size()).isEqualTo(7);
+        assertThat(anotherTree.size()).isEqualTo(7);
+        assertThat(anotherTree.find(1)).isSameAs(node);
+    }
+
+    @Test
+    public void shouldStayBalancedAfterManyInsertionsAndDeletions() {
+        // given
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i);
+        }
+
+        // when
+        for (int i = 0; i < 1000; i += 3) {
+            tree.delete(i);
+        }
+
+        // then
+        assertBalanced(tree.getRoot());
+        assertThat(tree.getHeight()).isEqualTo(height(tree.getRoot()));
+        assertThat(tree.getHeight()).isLessThanOrEqualTo(14);
+    }
+
+    @Test
+    public void shouldKeepSize() {
+        // when and then
+        assertThat(tree.size()).isZero();
+
+        // and given
+        for (int i = 0; i < 10; i++) {
+            tree.insert(i);
+        }
+
+        // when and then
+        assertThat(tree.size()).isEqualTo(10);
+
+        // and given
+        tree.delete(3);
+        AVLTree<Integer> greaterOrEqual = tree.split(5);
+
+        // when and then
+        assertThat(tree.size()).isEqualTo(4);
+        assertThat(greaterOrEqual.size()).isEqualTo(5);
+        assertThat(AVLTree.join(tree, greaterOrEqual).size()).isEqualTo(9);
+    }
+
+    @Test
+    public void shouldRank() {
+        // given
+        for (int i = 0; i < 20; i += 2) {
+            tree.insert(i);
+        }
+
+        // when and then
+        assertThat(tree.rank(-1)).isZero();
+        assertThat(tree.rank(0)).isZero();
+        assertThat(tree.rank(1)).isOne();
+        assertThat(tree.rank(8)).isEqualTo(4);
+        assertThat(tree.rank(9)).isEqualTo(5);
+        assertThat(tree.rank(100)).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldSelect() {
+        // given
+        for (int i = 9; i >= 0; i--) {
+            tree.insert(i * 10);
+        }
+        tree.delete(50);
+
+        // when and then
+        assertThat(tree.select(0).getValue()).isEqualTo(0);
+        assertThat(tree.select(4).getValue()).isEqualTo(40);
+        assertThat(tree.select(5).getValue()).isEqualTo(60);
+        assertThat(tree.select(8).getValue()).isEqualTo(90);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldThrowExceptionIfSelectingIndexOutOfBounds() {
+        // given
+        tree.insert(1);
+
+        // when
+        tree.select(1);
+
+        // then throw exception
+    }
+
+    @Test
+    public void shouldIterateInAscendingOrder() {
+        // given
+        for (int i : new int[]{5, 3, 8, 1, 4, 7, 9, 2, 6}) {
+            tree.insert(i);
+        }
+
+        // when and then
+        assertThat(tree).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(tree.iterator(3, 7)).containsExactly(3, 4, 5, 6);
+        assertThat(tree.iterator(null, 3)).containsExactly(1, 2);
+        assertThat(tree.iterator(8, null)).containsExactly(8, 9);
+    }
+
+    @Test
+    public void shouldIterateInDescendingOrder() {
+        // given
+        for (int i = 1; i <= 9; i++) {
+            tree.insert(i);
+        }
+
+        // when and then
+        assertThat(tree.descendingIterator()).containsExactly(9, 8, 7, 6, 5, 4, 3, 2, 1);
+        assertThat(tree.descendingIterator(3, 7)).containsExactly(6, 5, 4, 3);
+        assertThat(tree.descendingIterator(0, 2)).containsExactly(1);
+    }
+
+    @Test
+    public void shouldRemoveWhileIterating() {
+        // given
+        for (int i = 1; i <= 9; i++) {
+            tree.insert(i);
+        }
+
+        // when
+        Iterator<Integer> iterator = tree.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+
+        // then
+        assertThat(tree).containsExactly(1, 3, 5, 7, 9);
+        assertBalanced(tree.getRoot());
+    }
+
+    @Test
+    public void shouldBuildBalancedTreeFromSortedValues() {
+        // given
+        Integer[] values = new Integer[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 2;
+        }
+
+        // when
+        AVLTree<Integer> tree = AVLTree.fromSorted(comparator, values);
+
+        // then
+        assertBalanced(tree.getRoot());
+        assertThat(tree.size()).isEqualTo(100);
+        assertThat(tree.getHeight()).isEqualTo(7);
+        assertThat(tree.select(37).getValue()).isEqualTo(74);
+        assertThat(tree.find(50).getValue()).isEqualTo(50);
+        tree.insert(51);
+        tree.delete(50);
+        assertBalanced(tree.getRoot());
+    }
+
+    @Test
+    public void shouldBuildTreeFromSortedIterator() {
+        // when
+        AVLTree<Integer> tree = AVLTree.fromSorted(comparator, List.of(1, 2, 3, 4, 5).iterator());
+
+        // then
+        assertThat(tree).containsExactly(1, 2, 3, 4, 5);
+        assertThat(tree.getRoot().getValue()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldBuildIndexFreeTreeFromSortedValues() {
+        // when
+        AVLTree<Integer> tree = AVLTree.indexFreeFromSorted(comparator, IntStream.range(0, 1000).boxed().iterator());
+
+        // then
+        assertThat(tree.isIndexed()).isFalse();
+        assertThat(tree.size()).isEqualTo(1000);
+        assertThat(tree.getHeight()).isEqualTo(10);
+        assertThat(tree.find(500).getValue()).isEqualTo(500);
+        assertBalanced(tree.getRoot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfBuildingIndexFreeTreeFromEqualValues() {
+        // when
+        AVLTree.indexFreeFromSorted(comparator, List.of(1, 2, 2, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfBuildingFromUnsortedValues() {
+        // when
+        AVLTree.fromSorted(comparator, List.of(1, 3, 2));
+    }
+
+    @Test
+    public void shouldInsertAllIntoSmallTree() {
+        // given
+        AVLTree<Integer> tree = new AVLTree<>(comparator);
+        AVLNode<Integer> node = tree.insert(10);
+        tree.insert(20);
+
+        // when
+        tree.insertAll(List.of(25, 5, 15, 30, 0));
+
+        // then
+        assertThat(tree).containsExactly(0, 5, 10, 15, 20, 25, 30);
+        assertBalanced(tree.getRoot());
+        assertThat(tree.size()).isEqualTo(7);
+        assertThat(tree.find(10)).isSameAs(node);
+    }
+
+    @Test
+    public void shouldInsertSmallBatchIntoBigTree() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i * 2);
+        }
+
+        // when
+        tree.insertAll(List.of(7, 3));
+
+        // then
+        assertThat(tree.size()).isEqualTo(1002);
+        assertThat(tree.rank(7)).isEqualTo(5);
+        assertBalanced(tree.getRoot());
+    }
+
+    @Test
+    public void shouldNotInsertAnyOfBatchIfOneIsAlreadyInTree() {
+        // small batch goes value by value, big one is merged
+        List<List<Integer>> batches = List.of(List.of(1, 3, 4), IntStream.range(1, 2000).boxed().toList());
+        for (AVLTree<Integer> tree : List.of(new AVLTree<>(comparator), AVLTree.<Integer>indexFree(comparator))) {
+            for (List<Integer> batch : batches) {
+                // given
+                tree.clear();
+                for (int i = 0; i < 1000; i++) {
+                    tree.insert(i * 2);
+                }
+
+                // when
+                try {
+                    tree.insertAll(batch);
+                    fail("Expected IllegalArgumentException");
+                } catch (IllegalArgumentException e) {
+                    // then
+                    assertThat(tree.size()).isEqualTo(1000);
+                    assertThat(tree.contains(1)).isFalse();
+                    assertBalanced(tree.getRoot());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldUniteTrees() {
+        // given
+        AVLTree<Integer> first = AVLTree.fromSorted(comparator, List.of(1, 3, 5, 7));
+        AVLNode<Integer> node = first.find(5);
+        AVLTree<Integer> second = AVLTree.fromSorted(comparator, List.of(2, 3, 4, 5, 9));
+
+        // when
+        AVLTree<Integer> union = AVLTree.union(first, second);
+
+        // then
+        assertThat(union).isSameAs(first);
+        assertThat(union).containsExactly(1, 2, 3, 4, 5, 7, 9);
+        assertThat(union.size()).isEqualTo(7);
+        assertThat(union.find(5)).isSameAs(node);
+        assertThat(union.find(9)).isNotNull();
+        assertThat(second.isEmpty()).isTrue();
+        assertBalanced(union.getRoot());
+    }
+
+    @Test
+    public void shouldIntersectTrees() {
+        // given
+        AVLTree<Integer> first = AVLTree.indexFree(comparator);
+        AVLTree<Integer> second = AVLTree.indexFree(comparator);
+        for (int i = 0; i < 100; i++) {
+            first.insert(i * 2);
+            second.insert(i * 3);
+        }
+
+        // when
+        AVLTree<Integer> intersection = AVLTree.intersection(first, second);
+
+        // then
+        assertThat(intersection.size()).isEqualTo(34);
+        assertThat(intersection.select(1).getValue()).isEqualTo(6);
+        assertThat(intersection.contains(198)).isTrue();
+        assertThat(second.isEmpty()).isTrue();
+        assertBalanced(intersection.getRoot());
+    }
+
+    @Test
+    public void shouldKeepIndexOfIntersectionWithSmallerTree() {
+        // given
+        AVLTree<Integer> first = new AVLTree<>(comparator);
+        AVLTree<Integer> second = new AVLTree<>(comparator);
+        IntStream.range(0, 1000).forEach(first::insert);
+        IntStream.of(-5, 10, 500, 999, 1500).forEach(second::insert);
+        AVLNode<Integer> node = first.find(500);
+
+        // when
+        AVLTree<Integer> intersection = AVLTree.intersection(first, second);
+
+        // then
+        assertThat(intersection).containsExactly(10, 500, 999);
+        assertThat(intersection.find(500)).isSameAs(node);
+        assertThat(intersection.find(11)).isNull();
+        assertThat(intersection.find(-5)).isNull();
+        intersection.insert(11);
+        assertThat(intersection.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldKeepIndexOfSetOperationsWhenComparatorIsInconsistentWithEquals() {
+        // given
+        Comparator<Integer> byTens = Comparator.comparingInt(value -> value / 10);
+        AVLTree<Integer> unionFirst = AVLTree.fromSorted(byTens, List.of(11, 30));
+        AVLTree<Integer> intersectionFirst = AVLTree.fromSorted(byTens, List.of(11, 30));
+        AVLTree<Integer> differenceFirst = AVLTree.fromSorted(byTens, List.of(11, 30));
+
+        // when
+        AVLTree<Integer> union = AVLTree.union(unionFirst, AVLTree.fromSorted(byTens, List.of(12, 50)));
+        AVLTree<Integer> intersection = AVLTree.intersection(intersectionFirst, AVLTree.fromSorted(byTens, List.of(12, 50)));
+        AVLTree<Integer> difference = AVLTree.difference(differenceFirst, AVLTree.fromSorted(byTens, List.of(12, 50)));
+
+        // then
+        assertThat(union).containsExactly(11, 30, 50);
+        assertThat(union.find(11).getValue()).isEqualTo(11);
+        assertThat(union.find(12)).isNull();
+        assertThat(union.find(50).getValue()).isEqualTo(50);
+        assertThat(intersection).containsExactly(11);
+        assertThat(intersection.find(11).getValue()).isEqualTo(11);
+        assertThat(intersection.find(12)).isNull();
+        intersection.delete(11);
+        assertThat(intersection.isEmpty()).isTrue();
+        assertThat(difference).containsExactly(30);
+        assertThat(difference.find(11)).isNull();
+        assertThat(difference.find(30).getValue()).isEqualTo(30);
+    }
+
+    @Test
+    public void shouldSubtractTree() {
+        // given
+        AVLTree<Integer> first = AVLTree.fromSorted(comparator, List.of(1, 2, 3, 4, 5, 6));
+        AVLTree<Integer> second = AVLTree.fromSorted(comparator, List.of(0, 2, 4, 6, 8));
+
+        // when
+        AVLTree<Integer> difference = AVLTree.difference(first, second);
+
+        // then
+        assertThat(difference).containsExactly(1, 3, 5);
+        assertThat(difference.contains(2)).isFalse();
+        assertThat(difference.find(8)).isNull();
+        assertBalanced(difference.getRoot());
+    }
+
+    @Test
+    public void shouldUniteBigTreesInParallel() {
+        // given
+        AVLTree<Integer> first = AVLTree.indexFree(comparator);
+        AVLTree<Integer> second = AVLTree.indexFree(comparator);
+        first.insertAll(IntStream.range(0, 100_000).map(i -> i * 2).boxed().toList());
+        second.insertAll(IntStream.range(0, 100_000).map(i -> i * 3).boxed().toList());
+
+        // when
+        AVLTree<Integer> union = AVLTree.union(first, second);
+
+        // then
+        assertThat(union.size()).isEqualTo(166_666);
+        assertThat(union.rank(200_000)).isEqualTo(133_333);
+        assertBalanced(union.getRoot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfAttemptingToUniteTreeWithItself() {
+        // given
+        AVLTree<Integer> tree = AVLTree.fromSorted(comparator, List.of(1, 2));
+
+        // when
+        AVLTree.union(tree, tree);
+    }
+
+    @Test
+    public void shouldCountCopiesInMultiset() {
+        // given
+        AVLTree<Integer> multiset = AVLTree.multiset(comparator);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            multiset.insert(10);
+        }
+        multiset.insert(5);
+        multiset.insert(20);
+        multiset.insert(20);
+        multiset.delete(10);
+
+        // then
+        assertThat(multiset).containsExactly(5, 10, 10, 10, 10, 20, 20);
+        assertThat(multiset.size()).isEqualTo(7);
+        assertThat(multiset.count(10)).isEqualTo(4);
+        assertThat(multiset.count(15)).isEqualTo(0);
+        assertThat(multiset.rank(20)).isEqualTo(5);
+        assertThat(multiset.select(4).getValue()).isEqualTo(10);
+        assertThat(multiset.select(5).getValue()).isEqualTo(20);
+        assertThat(multiset.getHeight()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRemoveSingleCopyThroughIteratorOfMultiset() {
+        // given
+        AVLTree<Integer> multiset = AVLTree.multiset(comparator);
+        multiset.insertAll(List.of(1, 2, 2, 2, 3));
+
+        // when
+        Iterator<Integer> iterator = multiset.iterator();
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+
+        // then
+        assertThat(iterator.next()).isEqualTo(2);
+        assertThat(iterator.next()).isEqualTo(2);
+        assertThat(iterator.next()).isEqualTo(3);
+        assertThat(multiset).containsExactly(1, 2, 2, 3);
+    }
+
+    @Test
+    public void shouldCombineCountsOfMultisets() {
+        // given
+        AVLTree<Integer> first = AVLTree.multiset(comparator);
+        AVLTree<Integer> second = AVLTree.multiset(comparator);
+        first.insertAll(List.of(1, 1, 2, 3, 3, 3));
+        second.insertAll(List.of(1, 3, 3, 4));
+
+        // when
+        AVLTree<Integer> difference = AVLTree.difference(first, second);
+
+        // then
+        assertThat(difference).containsExactly(1, 2, 3);
+        assertThat(difference.size()).isEqualTo(3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfCombiningMultisetWithSet() {
+        // given
+        AVLTree<Integer> multiset = AVLTree.multiset(comparator);
+        AVLTree<Integer> set = AVLTree.indexFree(comparator);
+
+        // when
+        AVLTree.union(multiset, set);
+    }
+
+    @Test
+    public void shouldReadTreeOfSameShapeFromSnapshot() throws IOException {
+        // given
+        AVLTree<Integer> tree = new AVLTree<>(comparator);
+        for (int i = 0; i < 1000; i++) {
+            tree.insert((i * 37) % 1000);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        tree.writeTo(out, ElementCodec.integers());
+        AVLTree<Integer> readTree = AVLTree.readFrom(new ByteArrayInputStream(out.toByteArray()), comparator, ElementCodec.integers());
+
+        // then
+        assertThat(readTree).containsExactlyElementsOf(tree);
+        assertThat(readTree.isIndexed()).isTrue();
+        assertThat(readTree.getRoot().getValue()).isEqualTo(tree.getRoot().getValue());
+        assertThat(readTree.getHeight()).isEqualTo(tree.getHeight());
+        assertThat(readTree.find(500)).isNotNull();
+        assertThat(readTree.rank(500)).isEqualTo(500);
+        assertBalanced(readTree.getRoot());
+    }
+
+    @Test
+    public void shouldReadMultisetFromFileChannel() throws IOException {
+        // given
+        AVLTree<String> multiset = AVLTree.multiset(String::compareTo);
+        multiset.insertAll(List.of("b", "a", "b", "c", "b"));
+        Path file = Files.createTempFile("tree", ".bin");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            // when
+            multiset.writeTo(channel, ElementCodec.strings());
+            channel.position(0);
+            AVLTree<String> readMultiset = AVLTree.readFrom(channel, String::compareTo, ElementCodec.strings());
+
+            // then
+            assertThat(readMultiset.isMultiset()).isTrue();
+            assertThat(readMultiset).containsExactly("a", "b", "b", "b", "c");
+            assertThat(readMultiset.count("b")).isEqualTo(3);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionIfSnapshotIsTooDeep() throws IOException {
+        // given
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x41564c54);
+        out.writeByte(1);
+        out.writeByte(0);
+        out.writeInt(100_000);
+        for (int i = 0; i < 100_000; i++) { // every node claims a left child
+            out.writeByte(1);
+            out.writeByte(0);
+            out.writeInt(i);
+        }
+
+        // when
+        AVLTree.readFrom(new ByteArrayInputStream(bytes.toByteArray()), comparator, ElementCodec.integers());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionIfSnapshotHasWrongNodeCount() throws IOException {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        IntStream.range(0, 10).forEach(tree::insert);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tree.writeTo(bytes, ElementCodec.integers());
+        byte[] snapshot = bytes.toByteArray();
+        snapshot[9] = 11; // low byte of the node count after the magic, version and flags
+
+        // when
+        AVLTree.readFrom(new ByteArrayInputStream(snapshot), comparator, ElementCodec.integers());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionIfReadingSomethingElse() throws IOException {
+        // when
+        AVLTree.readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6}), comparator, ElementCodec.integers());
+    }
+
+    @Test
+    public void shouldCountComparisonsAndRotations() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        tree.enableStats();
+
+        // when
+        tree.insert(1);
+        tree.insert(2);
+        tree.insert(3); // single rotation at 1
+        tree.insert(5);
+        tree.insert(4); // double rotation at 3
+        tree.delete(1); // single rotation at 2
+
+        // then
+        AVLTreeStats stats = tree.getStats();
+        assertThat(stats.getInsertions()).isEqualTo(5);
+        assertThat(stats.getDeletions()).isEqualTo(1);
+        assertThat(stats.getSingleRotations()).isEqualTo(2);
+        assertThat(stats.getDoubleRotations()).isEqualTo(1);
+        assertThat(stats.getComparisons()).isEqualTo(stats.getNodesVisited());
+        assertThat(stats.getNodesVisited()).isEqualTo(0 + 1 + 2 + 2 + 3 + 2);
+        assertThat(stats.getSize()).isEqualTo(4);
+        assertThat(stats.getHeight()).isEqualTo(tree.getHeight());
+    }
+
+    @Test
+    public void shouldCountLookupOfDeletionThatFails() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        tree.insertAll(List.of(1, 2, 3));
+        tree.enableStats();
+
+        // when
+        Throwable thrown = null;
+        try {
+            tree.delete(4);
+        } catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+
+        // then
+        assertThat(thrown).isNotNull();
+        AVLTreeStats stats = tree.getStats();
+        assertThat(stats.getDeletions()).isEqualTo(0);
+        assertThat(stats.getNodesVisited()).isEqualTo(2);
+        assertThat(stats.getComparisons()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldCountComparisonsOfRangeExtractionAndBulkInsertion() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFreeFromSorted(comparator, IntStream.range(0, 1023).boxed().iterator());
+        tree.enableStats();
+
+        // when
+        tree.extractRange(100, 200);
+        long extractionComparisons = tree.getStats().getComparisons();
+        tree.insertAll(IntStream.range(100, 200).boxed().toList());
+
+        // then
+        AVLTreeStats stats = tree.getStats();
+        assertThat(extractionComparisons).isGreaterThanOrEqualTo(2 * 10L);
+        assertThat(stats.getComparisons() - extractionComparisons).isGreaterThanOrEqualTo(100L);
+    }
+
+    @Test
+    public void shouldCountRetraceSteps() {
+        // given
+        AVLTree<Integer> tree = new AVLTree<>(comparator);
+        tree.enableStats();
+
+        // when
+        for (int i = 0; i < 1024; i++) {
+            tree.insert(i);
+        }
+
+        // then
+        AVLTreeStats stats = tree.getStats();
+        assertThat(stats.getMaxRetraceSteps()).isEqualTo(tree.getHeight() - 1);
+        assertThat(stats.getSingleRotations()).isEqualTo(1024 - tree.getHeight());
+        assertThat(stats.getDoubleRotations()).isEqualTo(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowExceptionIfStatsAreNotEnabled() {
+        // given
+        AVLTree<Integer> tree = new AVLTree<>(comparator);
+        tree.enableStats();
+        tree.disableStats();
+
+        // when
+        tree.getStats();
+    }
+
+    @Test
+    public void shouldSplitSpliteratorBySubtrees() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        IntStream.range(0, 1000).forEach(tree::insert);
+
+        // when
+        Spliterator<Integer> suffix = tree.spliterator();
+        Spliterator<Integer> prefix = suffix.trySplit();
+
+        // then
+        assertThat(prefix.estimateSize() + suffix.estimateSize()).isEqualTo(1000);
+        assertThat(Math.abs(prefix.estimateSize() - suffix.estimateSize())).isLessThan(1000L / 3);
+        assertThat(suffix.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.SUBSIZED)).isTrue();
+        List<Integer> values = new ArrayList<>();
+        prefix.forEachRemaining(values::add);
+        suffix.forEachRemaining(values::add);
+        assertThat(values).containsExactlyElementsOf(IntStream.range(0, 1000).boxed().toList());
+    }
+
+    @Test
+    public void shouldStreamElementsInParallel() {
+        // given
+        AVLTree<Integer> tree = AVLTree.multiset(comparator);
+        IntStream.range(0, 100_000).forEach(i -> tree.insert(i % 1000));
+
+        // when
+        List<Integer> values = tree.parallelStream().toList();
+
+        // then
+        assertThat(values).hasSize(100_000);
+        assertThat(values.get(0)).isEqualTo(0);
+        assertThat(values.get(99_999)).isEqualTo(999);
+        assertThat(tree.stream().distinct().count()).isEqualTo(1000);
+    }
+
+    @Test
+    public void shouldReuseDeletedNodes() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        tree.enableNodePool(1);
+        AVLNode<Integer> first = tree.insert(1);
+        AVLNode<Integer> second = tree.insert(2);
+        tree.delete(1);
+        tree.delete(2);
+
+        // when
+        AVLNode<Integer> third = tree.insert(3);
+        AVLNode<Integer> fourth = tree.insert(4);
+
+        // then
+        assertThat(third).isSameAs(first);
+        assertThat(third.getValue()).isEqualTo(3);
+        assertThat(fourth).isNotSameAs(second);
+        assertThat(second.getValue()).isEqualTo(2);
+        assertThat(tree).containsExactly(3, 4);
+    }
+
+    @Test
+    public void shouldKeepNodesOutOfPoolWhenJoiningAndSplitting() {
+        for (boolean indexed : new boolean[]{false, true}) {
+            // given
+            AVLTree<Integer> left = indexed ? new AVLTree<>(comparator) : AVLTree.indexFree(comparator);
+            AVLTree<Integer> right = indexed ? new AVLTree<>(comparator) : AVLTree.indexFree(comparator);
+            left.enableNodePool(10);
+            right.enableNodePool(10);
+            IntStream.range(0, 5).forEach(left::insert);
+            IntStream.range(10, 15).forEach(right::insert);
+
+            // when
+            AVLTree<Integer> joined = AVLTree.join(left, right);
+            AVLTree<Integer> greater = joined.split(12);
+            joined.insert(100);
+            greater.insert(200);
+
+            // then
+            assertThat(joined).containsExactly(0, 1, 2, 3, 4, 10, 11, 100);
+            assertThat(greater).containsExactly(12, 13, 14, 200);
+            assertThat(joined.find(4).getValue()).isEqualTo(4);
+            assertBalanced(joined.getRoot());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfDeletingPooledNode() {
+        // given
+        AVLTree<Integer> tree = new AVLTree<>(comparator);
+        tree.enableNodePool(10);
+        tree.insert(1);
+        AVLNode<Integer> node = tree.insert(2);
+        tree.delete(node);
+
+        // when
+        tree.delete(node);
+    }
+
+    @Test
+    public void shouldAppendNextToHint() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        AVLNode<Integer> last = tree.insert(0);
+        tree.enableStats();
+
+        // when
+        for (int i = 1; i < 10_000; i++) {
+            last = tree.insertNear(last, i);
+        }
+
+        // then
+        assertThat(tree).containsExactlyElementsOf(IntStream.range(0, 10_000).boxed().toList());
+        assertThat(tree.getStats().getComparisons()).isEqualTo(2 * 9_999);
+        assertBalanced(tree.getRoot());
+    }
+
+    @Test
+    public void shouldInsertAndFindNearHint() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        IntStream.range(0, 100).forEach(i -> tree.insert(i * 10));
+        AVLNode<Integer> hint = tree.find(500);
+
+        // when
+        AVLNode<Integer> inserted = tree.insertNear(hint, 485);
+
+        // then
+        assertThat(tree.findNear(hint, 485)).isSameAs(inserted);
+        assertThat(tree.findNear(hint, 10)).isSameAs(tree.find(10));
+        assertThat(tree.findNear(hint, 990)).isSameAs(tree.find(990));
+        assertThat(tree.findNear(hint, 495)).isNull();
+        assertThat(tree.rank(485)).isEqualTo(49);
+        assertBalanced(tree.getRoot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfHintIsDeleted() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        tree.insert(1);
+        AVLNode<Integer> hint = tree.insert(2);
+        tree.delete(2);
+
+        // when
+        tree.insertNear(hint, 3);
+    }
+
+    @Test
+    public void shouldThrowExceptionIfHintIsInnerNodeOfAnotherTree() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        AVLTree<Integer> anotherTree = AVLTree.indexFree(comparator);
+        IntStream.range(0, 100).forEach(tree::insert);
+        IntStream.range(0, 100).forEach(anotherTree::insert);
+        AVLNode<Integer> hint = anotherTree.find(99);
+
+        // when
+        Throwable thrown = null;
+        try {
+            tree.insertNear(hint, 100);
+        } catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+
+        // then
+        assertThat(thrown).isNotNull();
+        assertThat(tree.size()).isEqualTo(100);
+        assertThat(anotherTree.size()).isEqualTo(100);
+        assertBalanced(tree.getRoot());
+    }
+
+    @Test
+    public void shouldExtractRange() {
+        // given
+        AVLTree<Integer> tree = new AVLTree<>(comparator);
+        IntStream.range(0, 1000).forEach(tree::insert);
+
+        // when
+        AVLTree<Integer> range = tree.extractRange(100, 900);
+
+        // then
+        assertThat(range).containsExactlyElementsOf(IntStream.range(100, 900).boxed().toList());
+        assertThat(range.find(100)).isNotNull();
+        assertThat(tree.size()).isEqualTo(200);
+        assertThat(tree.find(100)).isNull();
+        assertThat(tree.rank(900)).isEqualTo(100);
+        assertBalanced(range.getRoot());
+        assertBalanced(tree.getRoot());
+    }
+
+    @Test
+    public void shouldDeleteRange() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        IntStream.range(0, 1000).forEach(tree::insert);
+
+        // when
+        int deleted = tree.deleteRange(null, 250);
+
+        // then
+        assertThat(deleted).isEqualTo(250);
+        assertThat(tree).containsExactlyElementsOf(IntStream.range(250, 1000).boxed().toList());
+        assertThat(tree.deleteRange(600, 600)).isEqualTo(0);
+        assertThat(tree.deleteRange(990, null)).isEqualTo(10);
+        assertThat(tree.size()).isEqualTo(740);
+        assertBalanced(tree.getRoot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfRangeEndsBeforeItStarts() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(comparator);
+        tree.insert(1);
+
+        // when
+        tree.deleteRange(5, 2);
+    }
+
+    private static int height(AVLNode<Integer> node) {
+        int leftChildHeight = node.getLeft() != null ? height(node.getLeft()) : 0;
+        int rightChildHeight = node.getRight() != null ? height(node.getRight()) : 0;
+        return max(leftChildHeight, rightChildHeight) + 1;
+    }
+
+    private static void assertBalanced(AVLNode<Integer> node) {
+        if (node == null) {
+            return;
+        }
+        int leftChildHeight = node.getLeft() != null ? height(node.getLeft()) : 0;
+        int rightChildHeight = node.getRight() != null ? height(node.getRight()) : 0;
+        assertThat(Math.abs(leftChildHeight - rightChildHeight)).isLessThanOrEqualTo(1);
+        if (node.getLeft() != null) {
+            assertThat(node.getLeft().getParent()).isSameAs(node);
+            assertBalanced(node.getLeft());
+        }
+        if (node.getRight() != null) {
+            assertThat(node.getRight().getParent()).isSameAs(node);
+            assertBalanced(node.getRight());
+        }
     }
 }
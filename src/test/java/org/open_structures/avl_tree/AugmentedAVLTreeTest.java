@@ -0,0 +1,113 @@
+package org.open_structures.avl_tree;
+
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AugmentedAVLTreeTest {
+
+    private static final Comparator<Integer> COMPARATOR = Integer::compareTo;
+    private static final Augmentation<Integer, Long> SUM = Augmentation.summingLong(Integer::longValue);
+
+    @Test
+    public void shouldAggregateRanges() {
+        // given
+        AugmentedAVLTree<Integer, Long> tree = new AugmentedAVLTree<>(COMPARATOR, SUM);
+        for (int i = 1; i <= 100; i++) {
+            tree.insert(i);
+        }
+
+        // when and then
+        assertThat(tree.aggregate()).isEqualTo(5050L);
+        assertThat(tree.aggregate(1, 11)).isEqualTo(55L);
+        assertThat(tree.aggregate(null, 3)).isEqualTo(3L);
+        assertThat(tree.aggregate(99, null)).isEqualTo(199L);
+        assertThat(tree.aggregate(50, 50)).isEqualTo(0L);
+        assertThat(tree.aggregate(200, 300)).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldKeepAggregatesThroughInsertionsAndDeletions() {
+        // given
+        AugmentedAVLTree<Integer, Long> tree = AugmentedAVLTree.indexFree(COMPARATOR, SUM);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(1);
+
+        for (int i = 0; i < 2000; i++) {
+            // when
+            int value = random.nextInt(300);
+            if (expected.add(value)) {
+                tree.insert(value);
+            } else {
+                expected.remove(value);
+                tree.delete(value);
+            }
+
+            // then
+            int from = random.nextInt(300);
+            int to = from + random.nextInt(100);
+            assertThat(tree.aggregate(from, to)).isEqualTo(sum(expected.subSet(from, to)));
+        }
+        assertThat(tree.aggregate()).isEqualTo(sum(expected));
+    }
+
+    @Test
+    public void shouldCombineAggregatesInAscendingOrder() {
+        // given
+        Augmentation<String, String> concatenation = Augmentation.of("", value -> value, String::concat);
+        AugmentedAVLTree<String, String> tree = new AugmentedAVLTree<>(String::compareTo, concatenation);
+        for (String letter : "qwertyuiopasdfghjklzxcvbnm".split("")) {
+            tree.insert(letter);
+        }
+
+        // when and then
+        assertThat(tree.aggregate()).isEqualTo("abcdefghijklmnopqrstuvwxyz");
+        assertThat(tree.aggregate("c", "k")).isEqualTo("cdefghij");
+    }
+
+    @Test
+    public void shouldKeepAggregatesThroughJoinAndSplit() {
+        // given
+        AugmentedAVLTree<Integer, Long> left = new AugmentedAVLTree<>(COMPARATOR, SUM);
+        AugmentedAVLTree<Integer, Long> right = new AugmentedAVLTree<>(COMPARATOR, SUM);
+        for (int i = 0; i < 10; i++) {
+            left.insert(i);
+        }
+        for (int i = 10; i < 1000; i++) {
+            right.insert(i);
+        }
+
+        // when
+        AugmentedAVLTree<Integer, Long> joined = AugmentedAVLTree.join(left, right);
+        AugmentedAVLTree<Integer, Long> greater = joined.split(500);
+
+        // then
+        assertThat(joined.aggregate()).isEqualTo(124_750L);
+        assertThat(greater.aggregate()).isEqualTo(374_750L);
+        assertThat(greater.aggregate(500, 502)).isEqualTo(1001L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfJoiningTreesWithDifferentAugmentations() {
+        // given
+        AugmentedAVLTree<Integer, Long> left = new AugmentedAVLTree<>(COMPARATOR, SUM);
+        AugmentedAVLTree<Integer, Long> right = new AugmentedAVLTree<>(COMPARATOR, Augmentation.summingLong(value -> 1));
+        left.insert(1);
+        right.insert(2);
+
+        // when
+        AugmentedAVLTree.join(left, right);
+    }
+
+    private static long sum(Iterable<Integer> values) {
+        long sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
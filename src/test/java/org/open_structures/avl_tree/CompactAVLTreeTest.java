@@ -0,0 +1,78 @@
+package org.open_structures.avl_tree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompactAVLTreeTest {
+
+    @Test
+    public void shouldKeepElementsInOrder() {
+        // given
+        CompactAVLTree<Integer> tree = new CompactAVLTree<>(Integer::compareTo);
+
+        // when
+        for (int i = 0; i < 1023; i++) {
+            tree.insert(i);
+        }
+
+        // then
+        assertThat(tree.size()).isEqualTo(1023);
+        assertThat(tree.getHeight()).isEqualTo(10);
+        assertThat(tree.first()).isEqualTo(0);
+        assertThat(tree.last()).isEqualTo(1022);
+        assertThat(tree.contains(512)).isTrue();
+        assertThat(tree.contains(1023)).isFalse();
+    }
+
+    @Test
+    public void shouldMatchTreeSet() {
+        // given
+        CompactAVLTree<Integer> tree = new CompactAVLTree<>(Integer::compareTo);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(1);
+
+        // when
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(2000);
+            if (expected.remove(value)) {
+                tree.delete(value);
+            } else {
+                expected.add(value);
+                tree.insert(value);
+            }
+        }
+
+        // then
+        List<Integer> values = new ArrayList<>();
+        tree.forEach(values::add);
+        assertThat(values).containsExactlyElementsOf(expected);
+        assertThat(tree.size()).isEqualTo(expected.size());
+        assertThat(tree.getHeight()).isLessThanOrEqualTo((int) (1.45 * (Math.log(expected.size() + 2) / Math.log(2))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfValueIsDuplicated() {
+        // given
+        CompactAVLTree<Integer> tree = new CompactAVLTree<>(Integer::compareTo);
+        tree.insert(1);
+
+        // when
+        tree.insert(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfDeletingAbsentValue() {
+        // given
+        CompactAVLTree<Integer> tree = new CompactAVLTree<>(Integer::compareTo);
+        tree.insert(1);
+
+        // when
+        tree.delete(2);
+    }
+}
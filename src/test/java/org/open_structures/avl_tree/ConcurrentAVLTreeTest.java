@@ -0,0 +1,104 @@
+package org.open_structures.avl_tree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentAVLTreeTest {
+
+    @Test
+    public void shouldInsertAndDelete() {
+        // given
+        ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>(Integer::compareTo);
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            assertThat(tree.insert(i)).isTrue();
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertThat(tree.delete(i)).isTrue();
+        }
+
+        // then
+        assertThat(tree.size()).isEqualTo(500);
+        assertThat(tree.contains(1)).isTrue();
+        assertThat(tree.contains(2)).isFalse();
+        assertThat(tree.insert(1)).isFalse();
+        assertThat(tree.delete(2)).isFalse();
+    }
+
+    @Test
+    public void shouldInsertDeletedRoutingNodeValueAgain() {
+        // given
+        ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>(Integer::compareTo);
+        tree.insert(2);
+        tree.insert(1);
+        tree.insert(3);
+
+        // when
+        tree.delete(2);
+        boolean inserted = tree.insert(2);
+
+        // then
+        assertThat(inserted).isTrue();
+        assertThat(tree.contains(2)).isTrue();
+        assertThat(tree.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldKeepValuesOfConcurrentWriters() throws InterruptedException {
+        // given
+        ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>(Integer::compareTo);
+        int threadCount = 4;
+        List<Set<Integer>> expected = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int id = t;
+            Set<Integer> own = new HashSet<>();
+            expected.add(own);
+            threads.add(new Thread(() -> {
+                Random random = new Random(id);
+                for (int i = 0; i < 20_000; i++) {
+                    // every thread has its own values, so it knows what the tree should answer
+                    int value = random.nextInt(1000) * threadCount + id;
+                    boolean result = random.nextBoolean() ? tree.insert(value) == own.add(value) : tree.delete(value) == own.remove(value);
+                    if (!result || tree.contains(value) != own.contains(value)) {
+                        synchronized (errors) {
+                            errors.add("unexpected result for " + value);
+                        }
+                    }
+                }
+            }));
+        }
+
+        // when
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(errors).isEmpty();
+        int size = 0;
+        for (Set<Integer> own : expected) {
+            size += own.size();
+            for (int value : own) {
+                assertThat(tree.contains(value)).isTrue();
+            }
+        }
+        assertThat(tree.size()).isEqualTo(size);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfValueIsNull() {
+        // when
+        new ConcurrentAVLTree<Integer>(Integer::compareTo).insert(null);
+    }
+}
@@ -0,0 +1,116 @@
+package org.open_structures.avl_tree;
+
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IntAVLTreeTest {
+
+    @Test
+    public void shouldInsertAndDelete() {
+        // given
+        IntAVLTree tree = new IntAVLTree();
+
+        // when
+        for (int i = 10; i > 0; i--) {
+            tree.insert(i * 10);
+        }
+        tree.delete(50);
+        tree.delete(100);
+
+        // then
+        assertThat(tree.toArray()).containsExactly(10, 20, 30, 40, 60, 70, 80, 90);
+        assertThat(tree.size()).isEqualTo(8);
+        assertThat(tree.contains(60)).isTrue();
+        assertThat(tree.contains(50)).isFalse();
+        assertThat(tree.first()).isEqualTo(10);
+        assertThat(tree.last()).isEqualTo(90);
+    }
+
+    @Test
+    public void shouldStayBalanced() {
+        // given
+        IntAVLTree tree = new IntAVLTree();
+
+        // when
+        for (int i = 0; i < 1023; i++) {
+            tree.insert(i);
+        }
+        for (int i = 0; i < 1023; i += 2) {
+            tree.delete(i);
+        }
+
+        // then
+        assertThat(tree.size()).isEqualTo(511);
+        assertThat(tree.getHeight()).isLessThanOrEqualTo(13);
+        PrimitiveIterator.OfInt iterator = tree.iterator();
+        for (int i = 1; i < 1023; i += 2) {
+            assertThat(iterator.nextInt()).isEqualTo(i);
+        }
+        assertThat(iterator.hasNext()).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfInsertingDuplicate() {
+        // given
+        IntAVLTree tree = new IntAVLTree();
+        tree.insert(1);
+
+        // when
+        tree.insert(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfDeletingMissingKey() {
+        // when
+        new IntAVLTree().delete(1);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void shouldThrowExceptionIfEmptyTreeHasNoFirstKey() {
+        // when
+        new IntAVLTree().first();
+    }
+
+    @Test
+    public void shouldJoinTrees() {
+        // given
+        IntAVLTree left = new IntAVLTree();
+        for (int i = 0; i < 100; i++) {
+            left.insert(i);
+        }
+        IntAVLTree right = new IntAVLTree();
+        right.insert(100);
+        right.insert(101);
+
+        // when
+        IntAVLTree joined = IntAVLTree.join(left, right);
+
+        // then
+        assertThat(joined).isSameAs(left);
+        assertThat(right.isEmpty()).isTrue();
+        assertThat(joined.size()).isEqualTo(102);
+        assertThat(joined.getHeight()).isLessThanOrEqualTo(8);
+        for (int i = 0; i < 102; i++) {
+            assertThat(joined.contains(i)).isTrue();
+        }
+        joined.delete(101);
+        assertThat(joined.last()).isEqualTo(100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfAttemptingToJoinOverlappingTrees() {
+        // given
+        IntAVLTree left = new IntAVLTree();
+        left.insert(1);
+        left.insert(5);
+        IntAVLTree right = new IntAVLTree();
+        right.insert(3);
+
+        // when
+        IntAVLTree.join(left, right);
+    }
+}
@@ -0,0 +1,47 @@
+package org.open_structures.avl_tree;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongAVLTreeTest {
+
+    @Test
+    public void shouldInsertAndDeleteKeysBeyondIntRange() {
+        // given
+        LongAVLTree tree = new LongAVLTree();
+
+        // when
+        tree.insert(Long.MAX_VALUE);
+        tree.insert(Long.MIN_VALUE);
+        tree.insert(1L << 40);
+        tree.insert(0);
+        tree.delete(0);
+
+        // then
+        assertThat(tree.toArray()).containsExactly(Long.MIN_VALUE, 1L << 40, Long.MAX_VALUE);
+        assertThat(tree.contains(1L << 40)).isTrue();
+        assertThat(tree.contains(0)).isFalse();
+    }
+
+    @Test
+    public void shouldJoinSmallerLeftTreeIntoBiggerRightOne() {
+        // given
+        LongAVLTree left = new LongAVLTree();
+        left.insert(-1);
+        LongAVLTree right = new LongAVLTree();
+        for (long i = 0; i < 50; i++) {
+            right.insert(i * 1_000_000_000_000L);
+        }
+
+        // when
+        LongAVLTree joined = LongAVLTree.join(left, right);
+
+        // then
+        assertThat(joined).isSameAs(right);
+        assertThat(left.isEmpty()).isTrue();
+        assertThat(joined.size()).isEqualTo(51);
+        assertThat(joined.first()).isEqualTo(-1L);
+        assertThat(joined.getHeight()).isLessThanOrEqualTo(7);
+    }
+}
@@ -0,0 +1,182 @@
+package org.open_structures.avl_tree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedAVLTreeTest {
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("tree", ".avl");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void shouldInsertAndDeleteAcrossChunks() throws IOException {
+        try (MappedAVLTree<Long> tree = MappedAVLTree.open(file, Long::compareTo, KeyCodec.longs(), 8)) {
+            // when
+            for (long i = 0; i < 100; i++) {
+                tree.insert(i * 3);
+            }
+            for (long i = 0; i < 100; i += 2) {
+                tree.delete(i * 3);
+            }
+
+            // then
+            assertThat(tree.size()).isEqualTo(50);
+            assertThat(tree.getHeight()).isLessThanOrEqualTo(8);
+            assertThat(tree.contains(3L)).isTrue();
+            assertThat(tree.contains(6L)).isFalse();
+            assertThat(tree.first()).isEqualTo(3L);
+            assertThat(tree.last()).isEqualTo(297L);
+        }
+    }
+
+    @Test
+    public void shouldReopenTree() throws IOException {
+        // given
+        try (MappedAVLTree<Integer> tree = MappedAVLTree.open(file, Integer::compareTo, KeyCodec.integers())) {
+            for (int i = 0; i < 1000; i++) {
+                tree.insert(i);
+            }
+            for (int i = 0; i < 1000; i += 2) {
+                tree.delete(i);
+            }
+        }
+
+        // when
+        try (MappedAVLTree<Integer> tree = MappedAVLTree.open(file, Integer::compareTo, KeyCodec.integers())) {
+            // then
+            assertThat(tree.size()).isEqualTo(500);
+            assertThat(tree.contains(999)).isTrue();
+            assertThat(tree.contains(998)).isFalse();
+            assertThat(tree.iterator().next()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void shouldReuseSlotsOfDeletedNodes() throws IOException {
+        try (MappedAVLTree<Integer> tree = MappedAVLTree.open(file, Integer::compareTo, KeyCodec.integers(), 16)) {
+            // given
+            for (int i = 0; i < 16; i++) {
+                tree.insert(i);
+            }
+            long fileSize = Files.size(file);
+
+            // when
+            for (int i = 0; i < 8; i++) {
+                tree.delete(i);
+            }
+            for (int i = 100; i < 108; i++) {
+                tree.insert(i);
+            }
+
+            // then
+            assertThat(tree.size()).isEqualTo(16);
+            assertThat(Files.size(file)).isEqualTo(fileSize);
+        }
+    }
+
+    @Test
+    public void shouldNavigateThroughNodes() throws IOException {
+        try (MappedAVLTree<Integer> tree = MappedAVLTree.open(file, Integer::compareTo, KeyCodec.integers())) {
+            // given
+            tree.insert(2);
+            tree.insert(1);
+            tree.insert(3);
+
+            // when
+            AVLNode<Integer> root = tree.getRoot();
+
+            // then
+            assertThat(root.getValue()).isEqualTo(2);
+            assertThat(root.getLeft().getValue()).isEqualTo(1);
+            assertThat(root.getRight().getValue()).isEqualTo(3);
+            assertThat(root.getLeft().getParent()).isEqualTo(root);
+            assertThat(tree.find(3)).isEqualTo(root.getRight());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionIfKeyWidthDiffers() throws IOException {
+        // given
+        MappedAVLTree.open(file, Long::compareTo, KeyCodec.longs()).close();
+
+        // when
+        MappedAVLTree.open(file, Integer::compareTo, KeyCodec.integers());
+    }
+
+    @Test
+    public void shouldLeaveFileThatIsNotTreeUntouched() throws IOException {
+        // given
+        Files.writeString(file, "not a tree\n");
+
+        // when
+        Throwable thrown = null;
+        try {
+            MappedAVLTree.open(file, Long::compareTo, KeyCodec.longs());
+        } catch (IOException e) {
+            thrown = e;
+        }
+
+        // then
+        assertThat(thrown).isNotNull();
+        assertThat(Files.size(file)).isEqualTo(11L);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionIfChunkCapacityIsCorrupt() throws IOException {
+        // given
+        try (MappedAVLTree<Long> tree = MappedAVLTree.open(file, Long::compareTo, KeyCodec.longs(), 8)) {
+            tree.insert(1L);
+        }
+        overwriteHeaderField(12, 0);
+
+        // when
+        MappedAVLTree.open(file, Long::compareTo, KeyCodec.longs());
+    }
+
+    @Test
+    public void shouldThrowExceptionIfSlotsDoNotFitIntoFile() throws IOException {
+        // given
+        try (MappedAVLTree<Long> tree = MappedAVLTree.open(file, Long::compareTo, KeyCodec.longs(), 8)) {
+            tree.insert(1L);
+        }
+        long fileSize = Files.size(file);
+        overwriteHeaderField(24, 1000);
+
+        // when
+        Throwable thrown = null;
+        try {
+            MappedAVLTree.open(file, Long::compareTo, KeyCodec.longs());
+        } catch (IOException e) {
+            thrown = e;
+        }
+
+        // then
+        assertThat(thrown).isNotNull();
+        assertThat(Files.size(file)).isEqualTo(fileSize);
+    }
+
+    private void overwriteHeaderField(int offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, value), offset);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.open_structures.avl_tree;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapLongAVLTreeTest {
+
+    @Test
+    public void shouldInsertAndDeleteAcrossSlabs() {
+        // given
+        OffHeapLongAVLTree tree = new OffHeapLongAVLTree(8);
+
+        // when
+        for (long i = 0; i < 100; i++) {
+            tree.insert(i * 3);
+        }
+        for (long i = 0; i < 100; i += 2) {
+            tree.delete(i * 3);
+        }
+
+        // then
+        assertThat(tree.size()).isEqualTo(50);
+        assertThat(tree.getHeight()).isLessThanOrEqualTo(8);
+        assertThat(tree.contains(3)).isTrue();
+        assertThat(tree.contains(6)).isFalse();
+        assertThat(tree.first()).isEqualTo(3L);
+        assertThat(tree.last()).isEqualTo(297L);
+    }
+
+    @Test
+    public void shouldReleaseSlabsAsTreeShrinks() {
+        // given
+        OffHeapLongAVLTree tree = new OffHeapLongAVLTree(8);
+        for (long i = 0; i < 64; i++) {
+            tree.insert(i);
+        }
+        assertThat(tree.getAllocatedBytes()).isEqualTo(8L * 8 * 24);
+
+        // when
+        for (long i = 0; i < 60; i++) {
+            tree.delete(i);
+        }
+
+        // then
+        assertThat(tree.toArray()).containsExactly(60L, 61L, 62L, 63L);
+        assertThat(tree.getAllocatedBytes()).isEqualTo(2L * 8 * 24);
+        tree.clear();
+        assertThat(tree.getAllocatedBytes()).isEqualTo(0L);
+        assertThat(tree.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldJoinTrees() {
+        // given
+        OffHeapLongAVLTree left = new OffHeapLongAVLTree(4);
+        OffHeapLongAVLTree right = new OffHeapLongAVLTree(4);
+        for (long i = 0; i < 10; i++) {
+            left.insert(i);
+            right.insert(100 + i);
+        }
+
+        // when
+        OffHeapLongAVLTree joined = OffHeapLongAVLTree.join(left, right);
+
+        // then
+        assertThat(joined.size()).isEqualTo(20);
+        assertThat(joined.first()).isEqualTo(0L);
+        assertThat(joined.last()).isEqualTo(109L);
+        assertThat((joined == left ? right : left).isEmpty()).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfSlabCapacityIsNotPowerOfTwo() {
+        // when
+        new OffHeapLongAVLTree(100);
+    }
+}
@@ -0,0 +1,109 @@
+package org.open_structures.avl_tree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistentAVLTreeTest {
+
+    @Test
+    public void shouldKeepOldVersionsUnchanged() {
+        // given
+        PersistentAVLTree<Integer> empty = PersistentAVLTree.empty(Integer::compareTo);
+        PersistentAVLTree<Integer> version1 = empty.insert(2).insert(1).insert(3);
+
+        // when
+        PersistentAVLTree<Integer> version2 = version1.delete(2).insert(4);
+
+        // then
+        assertThat(empty.isEmpty()).isTrue();
+        assertThat(version1).containsExactly(1, 2, 3);
+        assertThat(version2).containsExactly(1, 3, 4);
+        assertThat(version1.snapshot()).isSameAs(version1);
+    }
+
+    @Test
+    public void shouldStayBalanced() {
+        // given
+        PersistentAVLTree<Integer> tree = PersistentAVLTree.empty(Integer::compareTo);
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            tree = tree.insert(i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            tree = tree.delete(i);
+        }
+
+        // then
+        assertThat(tree.size()).isEqualTo(666);
+        assertThat(tree.getHeight()).isLessThanOrEqualTo(13);
+        assertThat(tree.first()).isEqualTo(1);
+        assertThat(tree.last()).isEqualTo(998);
+        assertThat(tree.rank(10)).isEqualTo(6);
+        assertThat(tree.select(6)).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldNavigate() {
+        // given
+        PersistentAVLTree<Integer> tree = PersistentAVLTree.<Integer>empty(Integer::compareTo).insert(10).insert(20).insert(30);
+
+        // when and then
+        assertThat(tree.ceiling(15)).isEqualTo(20);
+        assertThat(tree.ceiling(20)).isEqualTo(20);
+        assertThat(tree.higher(20)).isEqualTo(30);
+        assertThat(tree.floor(25)).isEqualTo(20);
+        assertThat(tree.lower(10)).isNull();
+        assertThat(tree.contains(30)).isTrue();
+        assertThat(tree.contains(31)).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfInsertingDuplicate() {
+        // when
+        PersistentAVLTree.<Integer>empty(Integer::compareTo).insert(1).insert(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfDeletingMissingValue() {
+        // when
+        PersistentAVLTree.<Integer>empty(Integer::compareTo).insert(1).delete(2);
+    }
+
+    @Test
+    public void shouldLetReadersIterateSnapshotsWhileWriterInserts() throws InterruptedException {
+        // given
+        AtomicReference<PersistentAVLTree<Integer>> current = new AtomicReference<>(PersistentAVLTree.empty(Integer::compareTo));
+        List<String> errors = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                PersistentAVLTree<Integer> snapshot = current.get().snapshot();
+                int expected = 0;
+                for (int value : snapshot) {
+                    if (value != expected++) {
+                        errors.add("unexpected " + value);
+                    }
+                }
+                if (expected != snapshot.size()) {
+                    errors.add("size " + snapshot.size() + " but iterated " + expected);
+                }
+            }
+        });
+
+        // when
+        reader.start();
+        for (int i = 0; i < 10_000; i++) {
+            current.set(current.get().insert(i));
+        }
+        reader.join();
+
+        // then
+        assertThat(errors).isEmpty();
+        assertThat(current.get().size()).isEqualTo(10_000);
+    }
+}
@@ -2,6 +2,8 @@ package org.open_structures.avl_tree;
 
 import org.junit.Test;
 
+import java.io.IOException;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class TreeUtilsTest {
@@ -33,4 +35,56 @@ public class TreeUtilsTest {
                   /  \\  /  \\
                 -10  -2 3  1000""");
     }
+
+    @Test
+    public void shouldPrintTopLevelsOfTheTree() throws IOException {
+        // given
+        AVLTree<Integer> tree = new AVLTree<>(Integer::compareTo);
+        for (int i = 1; i <= 7; i++) {
+            tree.insert(i);
+        }
+        StringBuilder out = new StringBuilder();
+
+        // when
+        TreeUtils.print(tree, out, 2);
+
+        // then
+        assertThat(out.toString()).isEqualTo("""
+                 4
+                / \\
+                2 6""");
+    }
+
+    @Test
+    public void shouldPrintDeepTree() {
+        // given
+        AVLTree<Integer> tree = AVLTree.indexFree(Integer::compareTo);
+        for (int i = 0; i < 100_000; i++) {
+            tree.insert(i);
+        }
+
+        // when
+        String[] rows = TreeUtils.print(tree).split("\n");
+
+        // then
+        assertThat(rows.length).isEqualTo(2 * tree.getHeight() - 1);
+        assertThat(rows[rows.length - 1].trim()).startsWith("0");
+    }
+
+    @Test
+    public void shouldFindSuccessorAndPredecessor() {
+        // given
+        AVLTree<Integer> tree = new AVLTree<>(Integer::compareTo);
+        for (int i = 1; i <= 7; i++) {
+            tree.insert(i);
+        }
+
+        // when and then
+        for (int i = 1; i < 7; i++) {
+            assertThat(TreeUtils.successor(tree.find(i))).isSameAs(tree.find(i + 1));
+            assertThat(TreeUtils.predecessor(tree.find(i + 1))).isSameAs(tree.find(i));
+        }
+        assertThat(TreeUtils.successor(tree.find(7))).isNull();
+        assertThat(TreeUtils.predecessor(tree.find(1))).isNull();
+    }
 }